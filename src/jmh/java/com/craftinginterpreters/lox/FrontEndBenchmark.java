@@ -0,0 +1,75 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scanner, parser and resolver on their own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmark {
+
+    @Param({
+        "programs/fib.lox",
+        "programs/objects.lox",
+        "programs/strings.lox",
+        "programs/closures.lox",
+        "examples/fib.lox",
+        "examples/closure.lox",
+        "examples/scope.lox",
+        "examples/classes/07-class-methods.lox"
+    })
+    public String program;
+
+    private String source;
+    private Interpreter interpreter;
+    private List<Stmt> statements;
+
+    @Setup
+    public void setUp() {
+        source = Programs.source(program);
+        interpreter = new Interpreter(Programs.discard(), Programs.discard());
+        statements = new Parser(new Scanner(source, interpreter.reporter), interpreter.reporter).parse();
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Scanner(source, interpreter.reporter).scanTokens();
+    }
+
+    /**
+     * Includes the scanning, as the parser pulls the tokens.
+     */
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(new Scanner(source, interpreter.reporter), interpreter.reporter).parse();
+    }
+
+    /**
+     * Resolves the same statements every time, which sets the same depths
+     * and slots again.
+     */
+    @Benchmark
+    public Resolver resolve() {
+        Resolver resolver = new Resolver(interpreter);
+        resolver.resolve(statements);
+        return resolver;
+    }
+}
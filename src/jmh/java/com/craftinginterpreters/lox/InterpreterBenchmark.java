@@ -0,0 +1,60 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs compiled programs on every engine, each time with fresh globals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    @Param({"tree", "closure", "vm"})
+    public String engine;
+
+    @Param({
+        "programs/fib.lox",
+        "programs/objects.lox",
+        "programs/strings.lox",
+        "programs/closures.lox"
+    })
+    public String program;
+
+    private Engine selected;
+    private PrintStream discard;
+    private CompiledScript script;
+
+    @Setup
+    public void setUp() {
+        selected = Engine.byName(engine);
+        discard = Programs.discard();
+        script = new Lox(selected, discard, discard).compile(Programs.source(program));
+        if (script == null) {
+            throw new IllegalStateException(program + " does not compile");
+        }
+    }
+
+    @Benchmark
+    public Lox interpret() {
+        Lox lox = new Lox(selected, discard, discard);
+        lox.execute(script);
+        return lox;
+    }
+}
@@ -0,0 +1,69 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * The binary format of compiled scripts, written by {@link AstWriter} and
+ * read by {@link AstReader}.
+ *
+ * <pre>
+ * int     MAGIC
+ * int     VERSION
+ * string  hash of the source
+ * int     number of strings, then each string:
+ *         int length, then its bytes in UTF-8
+ * int     number of globals used, then the index of each name
+ * int     number of statements, then each statement
+ * </pre>
+ *
+ * Nodes start with their tag byte and list their fields in the order of
+ * their constructor, followed by what the resolver filled in. A missing node
+ * is the tag {@link #NONE}. Strings are indexes into the string table, -1
+ * for null, tokens their type ordinal, lexeme, literal and line, and values
+ * a tag byte followed by a double or string index where needed. Arrays of
+ * ints are their length, -1 for null, and their elements. All numbers are
+ * big endian.
+ */
+final class AstFormat {
+
+    /** "LOXC" */
+    static final int MAGIC = 0x4C4F5843;
+    /**
+     * Has to change with every change to the nodes, the {@link TokenType}s
+     * or the layout, so older files are compiled anew.
+     */
+    static final int VERSION = 4;
+
+    static final byte NONE = 0;
+
+    static final byte ASSIGN = 1;
+    static final byte BINARY = 2;
+    static final byte CALL = 3;
+    static final byte GET = 4;
+    static final byte SET = 5;
+    static final byte THIS = 6;
+    static final byte GROUPING = 7;
+    static final byte LITERAL = 8;
+    static final byte LOGICAL = 9;
+    static final byte VARIABLE = 10;
+    static final byte UNARY = 11;
+
+    static final byte BLOCK = 20;
+    static final byte CLASS = 21;
+    static final byte EXPRESSION = 22;
+    static final byte FUNCTION = 23;
+    static final byte IF = 24;
+    static final byte PRINT = 25;
+    static final byte RETURN = 26;
+    static final byte BREAK = 27;
+    static final byte WHILE = 28;
+    static final byte VAR = 29;
+    static final byte FOR = 30;
+
+    static final byte NIL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte NUMBER = 3;
+    static final byte STRING = 4;
+
+    private AstFormat() {
+    }
+}
@@ -15,6 +15,7 @@ import com.craftinginterpreters.lox.Stmt.Block;
 import com.craftinginterpreters.lox.Stmt.Break;
 import com.craftinginterpreters.lox.Stmt.Class;
 import com.craftinginterpreters.lox.Stmt.Expression;
+import com.craftinginterpreters.lox.Stmt.For;
 import com.craftinginterpreters.lox.Stmt.Function;
 import com.craftinginterpreters.lox.Stmt.If;
 import com.craftinginterpreters.lox.Stmt.Print;
@@ -26,8 +27,11 @@ public class AstPrinter implements Expr.Visitor<String>, Stmt.Visitor<String> {
 
     @Override
     public String visitBlockStmt(Block stmt) {
-        // TODO Auto-generated method stub
-        return null;
+        StringBuilder sb = new StringBuilder("(block");
+        for (Stmt statement : stmt.statements) {
+            sb.append(" ").append(statement.accept(this));
+        }
+        return sb.append(")").toString();
     }
 
     @Override
@@ -44,8 +48,7 @@ public class AstPrinter implements Expr.Visitor<String>, Stmt.Visitor<String> {
 
     @Override
     public String visitExpressionStmt(Expression stmt) {
-        // TODO Auto-generated method stub
-        return null;
+        return parenthesize(";", stmt.expression);
     }
 
     @Override
@@ -62,8 +65,7 @@ public class AstPrinter implements Expr.Visitor<String>, Stmt.Visitor<String> {
 
     @Override
     public String visitPrintStmt(Print stmt) {
-        // TODO Auto-generated method stub
-        return null;
+        return parenthesize("print", stmt.expression);
     }
 
     @Override
@@ -84,6 +86,15 @@ public class AstPrinter implements Expr.Visitor<String>, Stmt.Visitor<String> {
         return null;
     }
 
+    @Override
+    public String visitForStmt(For stmt) {
+        // the declaration of the counter comes before the loop
+        String condition = parenthesize(stmt.operator.lexeme, stmt.counter, stmt.limit);
+        String increment = parenthesize("+", stmt.counter, new Literal(stmt.step));
+        return "(for " + stmt.counter.accept(this) + " " + condition + " " + increment + " "
+            + stmt.body.accept(this) + ")";
+    }
+
     @Override
     public String visitGetExpr(Get expr) {
         // TODO Auto-generated method stub
@@ -142,14 +153,12 @@ public class AstPrinter implements Expr.Visitor<String>, Stmt.Visitor<String> {
 
     @Override
     public String visitVariableExpr(Variable expr) {
-        // TODO Auto-generated method stub
-        return null;
+        return expr.name.lexeme;
     }
 
     @Override
     public String visitAssignExpr(Assign expr) {
-        // TODO Auto-generated method stub
-        return null;
+        return parenthesize("= " + expr.name.lexeme, expr.value);
     }
 
     @Override
@@ -0,0 +1,272 @@
+package com.craftinginterpreters.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads a {@link CompiledScript} in the {@link AstFormat}, for example from
+ * a memory-mapped file. Malformed input throws an
+ * {@link IllegalArgumentException} or a
+ * {@link java.nio.BufferUnderflowException}.
+ */
+final class AstReader {
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final ByteBuffer in;
+    private String[] strings;
+
+    private AstReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the script, or null if the input is of another version or
+     *         another source
+     */
+    static CompiledScript read(ByteBuffer in, String hash) {
+        if (in.getInt() != AstFormat.MAGIC || in.getInt() != AstFormat.VERSION) {
+            return null;
+        }
+        AstReader reader = new AstReader(in);
+        if (!hash.equals(reader.readString())) {
+            return null;
+        }
+        return reader.read();
+    }
+
+    private CompiledScript read() {
+        strings = new String[count()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString();
+        }
+
+        int count = count();
+        Set<String> globals = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            globals.add(readIndex());
+        }
+        return new CompiledScript(readStatements(), globals);
+    }
+
+    private int count() {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new IllegalArgumentException("Malformed count " + count);
+        }
+        return count;
+    }
+
+    private int[] readInts() {
+        if (in.getInt(in.position()) == -1) {
+            in.getInt();
+            return null;
+        }
+        int[] values = new int[count()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.getInt();
+        }
+        return values;
+    }
+
+    private String readString() {
+        byte[] bytes = new byte[count()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String readIndex() {
+        int index = in.getInt();
+        if (index == -1) {
+            return null;
+        }
+        if (index < 0 || index >= strings.length) {
+            throw new IllegalArgumentException("Malformed string index " + index);
+        }
+        return strings[index];
+    }
+
+    private Object readValue() {
+        byte tag = in.get();
+        switch (tag) {
+            case AstFormat.NIL:
+                return null;
+            case AstFormat.FALSE:
+                return false;
+            case AstFormat.TRUE:
+                return true;
+            case AstFormat.NUMBER:
+                return in.getDouble();
+            case AstFormat.STRING:
+                return readIndex();
+            default:
+                throw new IllegalArgumentException("Malformed value tag " + tag);
+        }
+    }
+
+    private Token readToken() {
+        int type = in.getInt();
+        if (type < 0 || type >= TYPES.length) {
+            throw new IllegalArgumentException("Malformed token type " + type);
+        }
+        return new Token(TYPES[type], readIndex(), readValue(), in.getInt());
+    }
+
+    private List<Stmt> readStatements() {
+        int count = count();
+        List<Stmt> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(readStmt());
+        }
+        return statements;
+    }
+
+    private List<Stmt.Function> readFunctions() {
+        int count = count();
+        List<Stmt.Function> functions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte tag = in.get();
+            if (tag != AstFormat.FUNCTION) {
+                throw new IllegalArgumentException("Malformed method tag " + tag);
+            }
+            functions.add(readFunction());
+        }
+        return functions;
+    }
+
+    private List<Expr> readExprs() {
+        int count = count();
+        List<Expr> exprs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            exprs.add(readExpr());
+        }
+        return exprs;
+    }
+
+    private List<Token> readTokens() {
+        int count = count();
+        List<Token> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tokens.add(readToken());
+        }
+        return tokens;
+    }
+
+    private Stmt.Function readFunction() {
+        Stmt.Function function = new Stmt.Function(readToken(), readTokens(), readStatements());
+        function.slots = in.getInt();
+        function.cell = in.get() == AstFormat.TRUE;
+        function.captures = readInts();
+        function.cells = readInts();
+        return function;
+    }
+
+    private Stmt.Class readClass() {
+        Stmt.Class klass = new Stmt.Class(readToken(), readFunctions(), readFunctions());
+        klass.cell = in.get() == AstFormat.TRUE;
+        klass.captures = readInts();
+        return klass;
+    }
+
+    private Stmt.Var readVar() {
+        Stmt.Var var = new Stmt.Var(readToken(), readExpr());
+        var.cell = in.get() == AstFormat.TRUE;
+        return var;
+    }
+
+    private Stmt.Block readBlock() {
+        Stmt.Block block = new Stmt.Block(readStatements());
+        block.scoped = in.get() == AstFormat.TRUE;
+        return block;
+    }
+
+    private Stmt.For readFor() {
+        Expr counter = readExpr();
+        Token operator = readToken();
+        Expr limit = readExpr();
+        Object step = readValue();
+        if (!(counter instanceof Expr.Variable) || !(step instanceof Double)) {
+            throw new IllegalArgumentException("Malformed counted loop");
+        }
+        Stmt.For loop = new Stmt.For((Expr.Variable) counter, operator, limit, (Double) step, readStmt());
+        loop.materialized = in.get() == AstFormat.TRUE;
+        return loop;
+    }
+
+    private Stmt readStmt() {
+        byte tag = in.get();
+        switch (tag) {
+            case AstFormat.NONE:
+                return null;
+            case AstFormat.BLOCK:
+                return readBlock();
+            case AstFormat.CLASS:
+                return readClass();
+            case AstFormat.EXPRESSION:
+                return new Stmt.Expression(readExpr());
+            case AstFormat.FUNCTION:
+                return readFunction();
+            case AstFormat.IF:
+                return new Stmt.If(readExpr(), readStmt(), readStmt());
+            case AstFormat.PRINT:
+                return new Stmt.Print(readExpr());
+            case AstFormat.RETURN:
+                return new Stmt.Return(readToken(), readExpr());
+            case AstFormat.BREAK:
+                return new Stmt.Break(readToken());
+            case AstFormat.WHILE:
+                return new Stmt.While(readExpr(), readStmt());
+            case AstFormat.VAR:
+                return readVar();
+            case AstFormat.FOR:
+                return readFor();
+            default:
+                throw new IllegalArgumentException("Malformed statement tag " + tag);
+        }
+    }
+
+    private Expr readExpr() {
+        byte tag = in.get();
+        switch (tag) {
+            case AstFormat.NONE:
+                return null;
+            case AstFormat.ASSIGN:
+                Expr.Assign assign = new Expr.Assign(readToken(), readExpr());
+                assign.depth = in.getInt();
+                assign.slot = in.getInt();
+                return assign;
+            case AstFormat.BINARY:
+                return new Expr.Binary(readExpr(), readToken(), readExpr());
+            case AstFormat.CALL:
+                return new Expr.Call(readExpr(), readToken(), readExprs());
+            case AstFormat.GET:
+                return new Expr.Get(readExpr(), readToken());
+            case AstFormat.SET:
+                return new Expr.Set(readExpr(), readToken(), readExpr());
+            case AstFormat.THIS:
+                Expr.This self = new Expr.This(readToken());
+                self.depth = in.getInt();
+                self.slot = in.getInt();
+                return self;
+            case AstFormat.GROUPING:
+                return new Expr.Grouping(readExpr());
+            case AstFormat.LITERAL:
+                return new Expr.Literal(readValue());
+            case AstFormat.LOGICAL:
+                return new Expr.Logical(readExpr(), readToken(), readExpr());
+            case AstFormat.VARIABLE:
+                Expr.Variable variable = new Expr.Variable(readToken());
+                variable.depth = in.getInt();
+                variable.slot = in.getInt();
+                return variable;
+            case AstFormat.UNARY:
+                return new Expr.Unary(readToken(), readExpr());
+            default:
+                throw new IllegalArgumentException("Malformed expression tag " + tag);
+        }
+    }
+}
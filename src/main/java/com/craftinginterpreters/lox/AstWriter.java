@@ -0,0 +1,371 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.craftinginterpreters.lox.Expr.Assign;
+import com.craftinginterpreters.lox.Expr.Binary;
+import com.craftinginterpreters.lox.Expr.Call;
+import com.craftinginterpreters.lox.Expr.Get;
+import com.craftinginterpreters.lox.Expr.Grouping;
+import com.craftinginterpreters.lox.Expr.Literal;
+import com.craftinginterpreters.lox.Expr.Logical;
+import com.craftinginterpreters.lox.Expr.Set;
+import com.craftinginterpreters.lox.Expr.This;
+import com.craftinginterpreters.lox.Expr.Unary;
+import com.craftinginterpreters.lox.Expr.Variable;
+import com.craftinginterpreters.lox.Stmt.Block;
+import com.craftinginterpreters.lox.Stmt.Break;
+import com.craftinginterpreters.lox.Stmt.Class;
+import com.craftinginterpreters.lox.Stmt.Expression;
+import com.craftinginterpreters.lox.Stmt.For;
+import com.craftinginterpreters.lox.Stmt.Function;
+import com.craftinginterpreters.lox.Stmt.If;
+import com.craftinginterpreters.lox.Stmt.Print;
+import com.craftinginterpreters.lox.Stmt.Return;
+import com.craftinginterpreters.lox.Stmt.Var;
+import com.craftinginterpreters.lox.Stmt.While;
+
+/**
+ * Writes a {@link CompiledScript} in the {@link AstFormat}.
+ */
+final class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(nodes);
+
+    private AstWriter() {
+    }
+
+    static byte[] write(CompiledScript script, String hash) throws IOException {
+        AstWriter writer = new AstWriter();
+        try {
+            writer.write(script);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(writer.nodes.size() + 1024);
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(AstFormat.MAGIC);
+        header.writeInt(AstFormat.VERSION);
+        writeString(header, hash);
+        header.writeInt(writer.strings.size());
+        for (String string : writer.strings.keySet()) {
+            writeString(header, string);
+        }
+        writer.nodes.writeTo(header);
+        header.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void write(CompiledScript script) throws IOException {
+        out.writeInt(script.globals.size());
+        for (String name : script.globals) {
+            writeIndex(name);
+        }
+        writeStatements(script.statements);
+        out.flush();
+    }
+
+    // the visitors can not throw checked exceptions
+    private void write(Stmt stmt) {
+        if (stmt == null) {
+            tag(AstFormat.NONE);
+        } else {
+            stmt.accept(this);
+        }
+    }
+
+    private void write(Expr expr) {
+        if (expr == null) {
+            tag(AstFormat.NONE);
+        } else {
+            expr.accept(this);
+        }
+    }
+
+    private void writeStatements(List<? extends Stmt> statements) {
+        writeInt(statements.size());
+        for (Stmt statement : statements) {
+            write(statement);
+        }
+    }
+
+    private void tag(byte tag) {
+        try {
+            out.writeByte(tag);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeInt(int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeInts(int[] values) {
+        if (values == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(values.length);
+        for (int value : values) {
+            writeInt(value);
+        }
+    }
+
+    private void writeIndex(String string) {
+        if (string == null) {
+            writeInt(-1);
+            return;
+        }
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        writeInt(index);
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            tag(AstFormat.NIL);
+        } else if (value instanceof Boolean) {
+            tag((Boolean) value ? AstFormat.TRUE : AstFormat.FALSE);
+        } else if (value instanceof Double) {
+            tag(AstFormat.NUMBER);
+            try {
+                out.writeDouble((Double) value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            tag(AstFormat.STRING);
+            writeIndex((String) value);
+        }
+    }
+
+    private void writeToken(Token token) {
+        writeInt(token.type.ordinal());
+        writeIndex(token.lexeme);
+        writeValue(token.literal);
+        writeInt(token.line);
+    }
+
+    @Override
+    public Void visitAssignExpr(Assign expr) {
+        tag(AstFormat.ASSIGN);
+        writeToken(expr.name);
+        write(expr.value);
+        writeInt(expr.depth);
+        writeInt(expr.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Binary expr) {
+        tag(AstFormat.BINARY);
+        write(expr.left);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Call expr) {
+        tag(AstFormat.CALL);
+        write(expr.callee);
+        writeToken(expr.paren);
+        writeInt(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            write(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Get expr) {
+        tag(AstFormat.GET);
+        write(expr.object);
+        writeToken(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Set expr) {
+        tag(AstFormat.SET);
+        write(expr.object);
+        writeToken(expr.name);
+        write(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(This expr) {
+        tag(AstFormat.THIS);
+        writeToken(expr.keyword);
+        writeInt(expr.depth);
+        writeInt(expr.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Grouping expr) {
+        tag(AstFormat.GROUPING);
+        write(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Literal expr) {
+        tag(AstFormat.LITERAL);
+        writeValue(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Logical expr) {
+        tag(AstFormat.LOGICAL);
+        write(expr.left);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Variable expr) {
+        tag(AstFormat.VARIABLE);
+        writeToken(expr.name);
+        writeInt(expr.depth);
+        writeInt(expr.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Unary expr) {
+        tag(AstFormat.UNARY);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Block stmt) {
+        tag(AstFormat.BLOCK);
+        writeStatements(stmt.statements);
+        tag(stmt.scoped ? AstFormat.TRUE : AstFormat.FALSE);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Class stmt) {
+        tag(AstFormat.CLASS);
+        writeToken(stmt.name);
+        writeStatements(stmt.methods);
+        writeStatements(stmt.classMethods);
+        tag(stmt.cell ? AstFormat.TRUE : AstFormat.FALSE);
+        writeInts(stmt.captures);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Expression stmt) {
+        tag(AstFormat.EXPRESSION);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Function stmt) {
+        tag(AstFormat.FUNCTION);
+        writeToken(stmt.name);
+        writeInt(stmt.params.size());
+        for (Token param : stmt.params) {
+            writeToken(param);
+        }
+        writeStatements(stmt.body);
+        writeInt(stmt.slots);
+        tag(stmt.cell ? AstFormat.TRUE : AstFormat.FALSE);
+        writeInts(stmt.captures);
+        writeInts(stmt.cells);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(If stmt) {
+        tag(AstFormat.IF);
+        write(stmt.condition);
+        write(stmt.thenBranch);
+        write(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Print stmt) {
+        tag(AstFormat.PRINT);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Return stmt) {
+        tag(AstFormat.RETURN);
+        writeToken(stmt.keyword);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Break stmt) {
+        tag(AstFormat.BREAK);
+        writeToken(stmt.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(While stmt) {
+        tag(AstFormat.WHILE);
+        write(stmt.condition);
+        write(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt(For stmt) {
+        tag(AstFormat.FOR);
+        write(stmt.counter);
+        writeToken(stmt.operator);
+        write(stmt.limit);
+        writeValue(stmt.step);
+        write(stmt.body);
+        tag(stmt.materialized ? AstFormat.TRUE : AstFormat.FALSE);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Var stmt) {
+        tag(AstFormat.VAR);
+        writeToken(stmt.name);
+        write(stmt.initializer);
+        tag(stmt.cell ? AstFormat.TRUE : AstFormat.FALSE);
+        return null;
+    }
+}
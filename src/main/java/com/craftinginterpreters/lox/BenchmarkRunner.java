@@ -0,0 +1,258 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the Lox programs of a directory end to end through {@link Lox#run},
+ * each a number of times with fresh globals, and reports the median and the
+ * 99th percentile of the wall time and the median allocation per run. The
+ * results can be saved as a baseline and compared with later on:
+ *
+ * <pre>
+ * java -cp target/classes com.craftinginterpreters.lox.BenchmarkRunner
+ *     [--engine=tree|closure|vm|all] [--runs=n] [--warmup=n]
+ *     [--save=file] [--baseline=file] [directory]
+ * </pre>
+ *
+ * The directory defaults to {@code benchmarks}. Allocation is only measured
+ * on JVMs that count the bytes allocated per thread.
+ */
+public final class BenchmarkRunner {
+
+    private static final String BASELINE_HEADER = "# benchmark median-ms p99-ms bytes";
+
+    /**
+     * The measurements of one program on one engine.
+     */
+    static final class Result {
+        /** engine and file name, like {@code tree/fib.lox} */
+        final String name;
+        final double median;
+        final double p99;
+        /** median bytes allocated per run, -1 if unknown */
+        final long bytes;
+
+        Result(String name, double median, double p99, long bytes) {
+            this.name = name;
+            this.median = median;
+            this.p99 = p99;
+            this.bytes = bytes;
+        }
+
+        String toLine() {
+            return String.format(Locale.ROOT, "%s %.3f %.3f %d", name, median, p99, bytes);
+        }
+
+        static Result parse(String line) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Malformed baseline line: " + line);
+            }
+            return new Result(parts[0], Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                Long.parseLong(parts[3]));
+        }
+    }
+
+    private final List<Engine> engines;
+    private final int runs;
+    private final int warmup;
+    private final PrintStream discard = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    BenchmarkRunner(List<Engine> engines, int runs, int warmup) {
+        this.engines = engines;
+        this.runs = runs;
+        this.warmup = warmup;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Engine> engines = Arrays.asList(Engine.TREE);
+        int runs = 10;
+        int warmup = 3;
+        Path save = null;
+        Path baseline = null;
+        Path directory = Paths.get("benchmarks");
+        for (String arg : args) {
+            if (arg.equals("--engine=all")) {
+                engines = Arrays.asList(Engine.values());
+            } else if (arg.startsWith("--engine=")) {
+                Engine engine = Engine.byName(arg.substring("--engine=".length()));
+                engines = Arrays.asList(engine == null ? usage() : engine);
+            } else if (arg.startsWith("--runs=")) {
+                runs = Integer.parseInt(arg.substring("--runs=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--save=")) {
+                save = Paths.get(arg.substring("--save=".length()));
+            } else if (arg.startsWith("--baseline=")) {
+                baseline = Paths.get(arg.substring("--baseline=".length()));
+            } else if (arg.startsWith("--")) {
+                usage();
+            } else {
+                directory = Paths.get(arg);
+            }
+        }
+        if (runs < 1 || warmup < 0) {
+            usage();
+        }
+
+        List<Result> results = new BenchmarkRunner(engines, runs, warmup).run(directory);
+        report(results, baseline == null ? new HashMap<>() : load(baseline), System.out);
+        if (save != null) {
+            save(results, save);
+        }
+    }
+
+    private static Engine usage() {
+        System.out.println("Usage: BenchmarkRunner [--engine=tree|closure|vm|all] [--runs=n] [--warmup=n]"
+            + " [--save=file] [--baseline=file] [directory]");
+        System.exit(ExitCode.NORMAL.getCode());
+        return null;
+    }
+
+    /**
+     * Runs every .lox file of the directory on every engine.
+     */
+    List<Result> run(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(directory)) {
+            files = paths.filter(path -> path.toString().endsWith(".lox")).sorted().collect(Collectors.toList());
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (Path file : files) {
+            String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            for (Engine engine : engines) {
+                Result result = measure(engine.getName() + "/" + file.getFileName(), engine, source);
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the measurements, or null if the program had an error
+     */
+    Result measure(String name, Engine engine, String source) {
+        for (int i = 0; i < warmup; i++) {
+            if (!new Lox(engine, discard, null).run(source)) {
+                return skip(name);
+            }
+        }
+
+        double[] millis = new double[runs];
+        long[] bytes = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            boolean success = new Lox(engine, discard, null).run(source);
+            millis[i] = (System.nanoTime() - start) / 1e6;
+            bytes[i] = allocated < 0 ? -1 : allocatedBytes() - allocated;
+            if (!success) {
+                return skip(name);
+            }
+        }
+
+        Arrays.sort(millis);
+        Arrays.sort(bytes);
+        return new Result(name, percentile(millis, 50), percentile(millis, 99), bytes[runs / 2]);
+    }
+
+    private static Result skip(String name) {
+        System.err.println(name + " failed, skipped");
+        return null;
+    }
+
+    /**
+     * @return the value at the percentile of the sorted values, by nearest rank
+     */
+    static double percentile(double[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * @return the bytes the current thread allocated so far, -1 if unknown
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    static void report(List<Result> results, Map<String, Result> baseline, PrintStream out) {
+        out.println(String.format(Locale.ROOT, "%-32s %10s %10s %12s  %s",
+            "benchmark", "median ms", "p99 ms", "alloc KB", baseline.isEmpty() ? "" : "vs baseline"));
+        for (Result result : results) {
+            out.println(String.format(Locale.ROOT, "%-32s %10.2f %10.2f %12s  %s",
+                result.name, result.median, result.p99,
+                result.bytes < 0 ? "n/a" : String.valueOf(result.bytes / 1024),
+                compare(baseline.get(result.name), result)));
+        }
+    }
+
+    /**
+     * @return how the medians changed since the baseline, empty without one
+     */
+    private static String compare(Result before, Result after) {
+        if (before == null) {
+            return "";
+        }
+        String time = String.format(Locale.ROOT, "time %+.1f%%", change(before.median, after.median));
+        if (before.bytes < 0 || after.bytes < 0) {
+            return time;
+        }
+        return time + String.format(Locale.ROOT, ", alloc %+.1f%%", change(before.bytes, after.bytes));
+    }
+
+    private static double change(double before, double after) {
+        return before == 0 ? 0 : (after - before) * 100 / before;
+    }
+
+    static Map<String, Result> load(Path baseline) throws IOException {
+        Map<String, Result> results = new HashMap<>();
+        for (String line : Files.readAllLines(baseline, StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                Result result = Result.parse(line);
+                results.put(result.name, result);
+            }
+        }
+        return results;
+    }
+
+    static void save(List<Result> results, Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(BASELINE_HEADER);
+        for (Result result : results) {
+            lines.add(result.toLine());
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+}
@@ -1,8 +1,16 @@
 package com.craftinginterpreters.lox;
 
+/**
+ * Unwinds to the enclosing while loop. Carries no state, so one instance
+ * without a stack trace serves every break.
+ */
 public class Break extends RuntimeException {
-    
-    public Break() {}
+
+    static final Break INSTANCE = new Break();
+
+    private Break() {
+        super(null, null, false, false);
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,38 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Limits for a script run, checked by the engines as they go: the
+ * tree-walker at every statement, the other engines at every loop iteration
+ * and call. Running over a limit throws a {@link LimitExceededError}.
+ */
+final class Budget {
+
+    // steps between looking at the clock, a power of two
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private long steps;
+    private final long deadline;
+
+    /**
+     * @param steps the number of steps the script may take
+     * @param nanos the wall time the script may take, starting now
+     */
+    Budget(long steps, long nanos) {
+        this.steps = steps;
+        this.deadline = System.nanoTime() + nanos;
+    }
+
+    void charge() {
+        if (--steps < 0) {
+            throw new LimitExceededError("Step limit exceeded");
+        }
+        if ((steps & (CLOCK_INTERVAL - 1)) == 0) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new LimitExceededError("Time limit exceeded");
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new LimitExceededError("Interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.craftinginterpreters.lox.Expr.Assign;
+import com.craftinginterpreters.lox.Expr.Binary;
+import com.craftinginterpreters.lox.Expr.Call;
+import com.craftinginterpreters.lox.Expr.Get;
+import com.craftinginterpreters.lox.Expr.Grouping;
+import com.craftinginterpreters.lox.Expr.Literal;
+import com.craftinginterpreters.lox.Expr.Logical;
+import com.craftinginterpreters.lox.Expr.Set;
+import com.craftinginterpreters.lox.Expr.This;
+import com.craftinginterpreters.lox.Expr.Unary;
+import com.craftinginterpreters.lox.Expr.Variable;
+import com.craftinginterpreters.lox.Stmt.Block;
+import com.craftinginterpreters.lox.Stmt.Class;
+import com.craftinginterpreters.lox.Stmt.Expression;
+import com.craftinginterpreters.lox.Stmt.Function;
+import com.craftinginterpreters.lox.Stmt.If;
+import com.craftinginterpreters.lox.Stmt.Print;
+import com.craftinginterpreters.lox.Stmt.Var;
+import com.craftinginterpreters.lox.Stmt.While;
+
+/**
+ * Compiles resolved statements into {@link Chunk}s for the
+ * {@link VirtualMachine}. Every function gets a chunk of its own, which is
+ * kept in the constant pool of the enclosing chunk.
+ */
+public class BytecodeCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    private Chunk chunk;
+    private int stackDepth = 0;
+    private int line = 0;
+    // number of local scopes around the code being compiled, 0 at top-level
+    private int scopeDepth = 0;
+    // pending jumps of the break statements of the innermost loop, null if
+    // a block or function lies between here and that loop
+    private List<Integer> loopExits = null;
+    private boolean inBlock = false;
+
+    Chunk compile(List<Stmt> statements) {
+        chunk = new Chunk(null);
+        compileAll(statements);
+        emit(OpCode.NIL, 1);
+        emit(OpCode.RETURN, -1);
+        chunk.finish();
+        return chunk;
+    }
+
+    private void compileAll(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            statement.accept(this);
+        }
+    }
+
+    private void compile(Expr expression) {
+        expression.accept(this);
+    }
+
+    private Chunk compileFunction(Function function) {
+        Chunk enclosingChunk = chunk;
+        int enclosingStackDepth = stackDepth;
+        List<Integer> enclosingLoopExits = loopExits;
+        boolean enclosingInBlock = inBlock;
+
+        chunk = new Chunk(function);
+        stackDepth = 0;
+        loopExits = null;
+        inBlock = true;
+        scopeDepth++;
+
+        // parameters are defined by the caller, see VmFunction
+        compileAll(function.body);
+        emit(OpCode.NIL, 1);
+        emit(OpCode.RETURN, -1);
+        chunk.finish();
+        Chunk compiled = chunk;
+
+        scopeDepth--;
+        chunk = enclosingChunk;
+        stackDepth = enclosingStackDepth;
+        loopExits = enclosingLoopExits;
+        inBlock = enclosingInBlock;
+        return compiled;
+    }
+
+    private void emit(int opCode, int stackEffect) {
+        chunk.write(opCode, line);
+        stackDepth += stackEffect;
+        chunk.maxStack = Math.max(chunk.maxStack, stackDepth);
+    }
+
+    private void emitOperand(int operand) {
+        chunk.write(operand, line);
+    }
+
+    private void emitConstant(int opCode, Object constant, int stackEffect) {
+        emit(opCode, stackEffect);
+        emitOperand(chunk.addConstant(constant));
+    }
+
+    /**
+     * @return the offset of the jump target, to be patched later
+     */
+    private int emitJump(int opCode) {
+        emit(opCode, 0);
+        emitOperand(-1);
+        return chunk.count - 1;
+    }
+
+    private void patchJump(int offset) {
+        chunk.code[offset] = chunk.count;
+    }
+
+    /**
+     * Defines the cell of a variable that needs one before its value gets
+     * compiled, so functions and classes can capture themselves.
+     */
+    private void defineCell(boolean cell) {
+        if (cell) {
+            emit(OpCode.DEFINE_CELL, 0);
+        }
+    }
+
+    /**
+     * @param cell whether {@link #defineCell} defined the variable already
+     */
+    private void define(Token name, boolean cell) {
+        line = name.line;
+        if (scopeDepth == 0) {
+            emitConstant(OpCode.DEFINE_GLOBAL, name, -1);
+        } else {
+            emit(cell ? OpCode.INITIALIZE_CELL : OpCode.DEFINE_LOCAL, -1);
+        }
+    }
+
+    @Override
+    public Void visitLiteralExpr(Literal expr) {
+        if (expr.value == null) {
+            emit(OpCode.NIL, 1);
+        } else if (Boolean.TRUE.equals(expr.value)) {
+            emit(OpCode.TRUE, 1);
+        } else if (Boolean.FALSE.equals(expr.value)) {
+            emit(OpCode.FALSE, 1);
+        } else {
+            emitConstant(OpCode.CONSTANT, expr.value, 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Variable expr) {
+        read(expr.name, expr.depth, expr.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(This expr) {
+        read(expr.keyword, expr.depth, expr.slot);
+        return null;
+    }
+
+    private void read(Token name, int depth, int slot) {
+        line = name.line;
+        if (depth < 0) {
+            emitConstant(OpCode.GET_GLOBAL, name, 1);
+        } else {
+            emit(OpCode.GET_LOCAL, 1);
+            emitOperand(depth);
+            emitOperand(slot);
+        }
+    }
+
+    @Override
+    public Void visitAssignExpr(Assign expr) {
+        compile(expr.value);
+        line = expr.name.line;
+        if (expr.depth < 0) {
+            emitConstant(OpCode.SET_GLOBAL, expr.name, 0);
+        } else {
+            emit(OpCode.SET_LOCAL, 0);
+            emitOperand(expr.depth);
+            emitOperand(expr.slot);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+        line = expr.operator.line;
+
+        switch (expr.operator.type) {
+            case BANG_EQUAL:
+                emit(OpCode.NOT_EQUAL, -1);
+                break;
+            case EQUAL_EQUAL:
+                emit(OpCode.EQUAL, -1);
+                break;
+            case GREATER:
+                emitConstant(OpCode.GREATER, expr.operator, -1);
+                break;
+            case GREATER_EQUAL:
+                emitConstant(OpCode.GREATER_EQUAL, expr.operator, -1);
+                break;
+            case LESS:
+                emitConstant(OpCode.LESS, expr.operator, -1);
+                break;
+            case LESS_EQUAL:
+                emitConstant(OpCode.LESS_EQUAL, expr.operator, -1);
+                break;
+            case PLUS:
+                emitConstant(OpCode.ADD, expr.operator, -1);
+                break;
+            case MINUS:
+                emitConstant(OpCode.SUBTRACT, expr.operator, -1);
+                break;
+            case STAR:
+                emitConstant(OpCode.MULTIPLY, expr.operator, -1);
+                break;
+            case SLASH:
+                emitConstant(OpCode.DIVIDE, expr.operator, -1);
+                break;
+            default:
+                // like the tree-walker, an unknown operator yields nil
+                emit(OpCode.POP, -1);
+                emit(OpCode.POP, -1);
+                emit(OpCode.NIL, 1);
+                break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Logical expr) {
+        compile(expr.left);
+        line = expr.operator.line;
+        int end = emitJump(expr.operator.type == TokenType.OR ? OpCode.JUMP_IF_TRUE : OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP, -1);
+        compile(expr.right);
+        patchJump(end);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Unary expr) {
+        compile(expr.right);
+        line = expr.operator.line;
+
+        switch (expr.operator.type) {
+            case MINUS:
+                emitConstant(OpCode.NEGATE, expr.operator, 0);
+                break;
+            case BANG:
+                emit(OpCode.NOT, 0);
+                break;
+            default:
+                emit(OpCode.POP, -1);
+                emit(OpCode.NIL, 1);
+                break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Call expr) {
+        compile(expr.callee);
+        for (Expr argument : expr.arguments) {
+            compile(argument);
+        }
+        line = expr.paren.line;
+        emit(OpCode.CALL, -expr.arguments.size());
+        emitOperand(expr.arguments.size());
+        emitOperand(chunk.addConstant(expr.paren));
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Get expr) {
+        compile(expr.object);
+        line = expr.name.line;
+        emitConstant(OpCode.GET_PROPERTY, expr, 0);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Set expr) {
+        compile(expr.object);
+        compile(expr.value);
+        line = expr.name.line;
+        emitConstant(OpCode.SET_PROPERTY, expr, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Expression stmt) {
+        compile(stmt.expression);
+        emit(OpCode.POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Print stmt) {
+        compile(stmt.expression);
+        emit(OpCode.PRINT, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Var stmt) {
+        line = stmt.name.line;
+        if (stmt.initializer == null && scopeDepth == 0) {
+            // globals must not be read before they got a value
+            emitConstant(OpCode.DECLARE_GLOBAL, stmt.name, 0);
+            return null;
+        }
+
+        defineCell(stmt.cell);
+        if (stmt.initializer == null) {
+            emit(OpCode.NIL, 1);
+        } else {
+            compile(stmt.initializer);
+        }
+        define(stmt.name, stmt.cell);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Function stmt) {
+        Chunk function = compileFunction(stmt);
+        line = stmt.name.line;
+        defineCell(stmt.cell);
+        emitConstant(OpCode.CLOSURE, function, 1);
+        define(stmt.name, stmt.cell);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Class stmt) {
+        List<Chunk> methods = new ArrayList<>();
+        for (Function method : stmt.methods) {
+            methods.add(compileFunction(method));
+        }
+        for (Function method : stmt.classMethods) {
+            methods.add(compileFunction(method));
+        }
+
+        line = stmt.name.line;
+        defineCell(stmt.cell);
+        emitConstant(OpCode.CLASS, stmt, 1);
+        emitOperand(stmt.methods.size());
+        emitOperand(stmt.classMethods.size());
+        for (Chunk method : methods) {
+            emitOperand(chunk.addConstant(method));
+        }
+        define(stmt.name, stmt.cell);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Block stmt) {
+        List<Integer> enclosingLoopExits = loopExits;
+        boolean enclosingInBlock = inBlock;
+        loopExits = null;
+        inBlock = true;
+        scopeDepth++;
+
+        if (stmt.scoped) {
+            emit(OpCode.PUSH_SCOPE, 0);
+        }
+        compileAll(stmt.statements);
+        if (stmt.scoped) {
+            emit(OpCode.POP_SCOPE, 0);
+        }
+
+        scopeDepth--;
+        loopExits = enclosingLoopExits;
+        inBlock = enclosingInBlock;
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(If stmt) {
+        compile(stmt.condition);
+        int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP, -1);
+        stmt.thenBranch.accept(this);
+        int endJump = emitJump(OpCode.JUMP);
+
+        patchJump(elseJump);
+        // the condition is still on the stack when jumping here
+        stackDepth++;
+        emit(OpCode.POP, -1);
+        if (stmt.elseBranch != null) {
+            stmt.elseBranch.accept(this);
+        }
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        return CountedLoops.toWhile(stmt).accept(this);
+    }
+
+    @Override
+    public Void visitWhileStmt(While stmt) {
+        List<Integer> enclosingLoopExits = loopExits;
+        loopExits = new ArrayList<>();
+
+        int start = chunk.count;
+        compile(stmt.condition);
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP, -1);
+        stmt.body.accept(this);
+        emit(OpCode.LOOP, 0);
+        emitOperand(start);
+
+        patchJump(exitJump);
+        // the condition is still on the stack when jumping here
+        stackDepth++;
+        emit(OpCode.POP, -1);
+        for (int exit : loopExits) {
+            patchJump(exit);
+        }
+
+        loopExits = enclosingLoopExits;
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        line = stmt.keyword.line;
+        if (stmt.expression == null) {
+            emit(OpCode.NIL, 1);
+        } else {
+            compile(stmt.expression);
+        }
+        emit(OpCode.RETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        line = stmt.keyword.line;
+        if (loopExits != null) {
+            loopExits.add(emitJump(OpCode.JUMP));
+        } else if (inBlock) {
+            emit(OpCode.BREAK_ERROR, 0);
+        } else {
+            emit(OpCode.BREAK, 0);
+        }
+        return null;
+    }
+}
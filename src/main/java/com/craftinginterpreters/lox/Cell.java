@@ -0,0 +1,14 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Holds a local variable that closures capture and that gets assigned, so
+ * its scope and the closures see the same value. Lox values are never cells
+ * themselves, so a slot holding one is always looked through.
+ */
+final class Cell {
+    Object value;
+
+    Cell(Object value) {
+        this.value = value;
+    }
+}
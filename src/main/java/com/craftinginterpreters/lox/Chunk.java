@@ -0,0 +1,80 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bytecode of the top-level script or of a single function, as produced by
+ * the {@link BytecodeCompiler}.
+ */
+class Chunk {
+    /** The compiled function, null for the top-level script. */
+    final Stmt.Function function;
+
+    int[] code = new int[16];
+    int count = 0;
+    /** Source line of each entry in code. */
+    int[] lines = new int[16];
+    Object[] constants;
+    /** Highest number of values this chunk keeps on the stack. */
+    int maxStack = 0;
+
+    private final List<Object> constantPool = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new IdentityHashMap<>();
+
+    Chunk(Stmt.Function function) {
+        this.function = function;
+    }
+
+    void write(int value, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = value;
+        lines[count] = line;
+        count++;
+    }
+
+    int addConstant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constantPool.size();
+            constantPool.add(value);
+            constantIndex.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Trims the code and freezes the constant pool, once compilation is done.
+     */
+    void finish() {
+        code = Arrays.copyOf(code, count);
+        lines = Arrays.copyOf(lines, count);
+        constants = constantPool.toArray();
+        constantIndex.clear();
+    }
+
+    int lineAt(int offset) {
+        return lines[offset];
+    }
+
+    String disassemble() {
+        StringBuilder sb = new StringBuilder();
+        int offset = 0;
+        while (offset < count) {
+            int operands = OpCode.operands(code, offset);
+            sb.append(String.format("%04d %4d %s", offset, lineAt(offset), OpCode.name(code[offset])));
+            for (int i = 1; i <= operands; i++) {
+                sb.append(' ').append(code[offset + i]);
+            }
+            sb.append('\n');
+            offset += 1 + operands;
+        }
+        return sb.toString();
+    }
+}
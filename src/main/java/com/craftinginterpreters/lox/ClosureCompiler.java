@@ -0,0 +1,441 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.craftinginterpreters.lox.Expr.Assign;
+import com.craftinginterpreters.lox.Expr.Binary;
+import com.craftinginterpreters.lox.Expr.Call;
+import com.craftinginterpreters.lox.Expr.Get;
+import com.craftinginterpreters.lox.Expr.Grouping;
+import com.craftinginterpreters.lox.Expr.Literal;
+import com.craftinginterpreters.lox.Expr.Logical;
+import com.craftinginterpreters.lox.Expr.Set;
+import com.craftinginterpreters.lox.Expr.This;
+import com.craftinginterpreters.lox.Expr.Unary;
+import com.craftinginterpreters.lox.Expr.Variable;
+import com.craftinginterpreters.lox.Interpreter.InterpreterError;
+import com.craftinginterpreters.lox.Stmt.Block;
+import com.craftinginterpreters.lox.Stmt.Class;
+import com.craftinginterpreters.lox.Stmt.Expression;
+import com.craftinginterpreters.lox.Stmt.For;
+import com.craftinginterpreters.lox.Stmt.Function;
+import com.craftinginterpreters.lox.Stmt.If;
+import com.craftinginterpreters.lox.Stmt.Print;
+import com.craftinginterpreters.lox.Stmt.Var;
+import com.craftinginterpreters.lox.Stmt.While;
+
+/**
+ * Execution engine that compiles the resolved statements once into a tree of
+ * closures and runs those. Every node is specialized up front for its
+ * operator and for where its variables live, so running it neither dispatches
+ * through the visitors nor switches on token types again.
+ *
+ * Runtime semantics and error messages are the ones of the {@link Interpreter}.
+ */
+public class ClosureCompiler implements Expr.Visitor<ClosureCompiler.ExprNode>, Stmt.Visitor<ClosureCompiler.StmtNode> {
+
+    @FunctionalInterface
+    interface ExprNode {
+        Object evaluate(LocalEnvironment environment);
+    }
+
+    @FunctionalInterface
+    interface StmtNode {
+        void execute(LocalEnvironment environment);
+    }
+
+    private static final StmtNode NOTHING = environment -> { };
+    private static final ExprNode NIL = environment -> null;
+
+    private final Interpreter interpreter;
+    private final Environment globals;
+    // number of local scopes around the code being compiled, 0 at top-level
+    private int scopeDepth = 0;
+
+    /**
+     * @param interpreter provides the globals and is handed to native functions
+     */
+    public ClosureCompiler(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals;
+    }
+
+    public void interpret(List<Stmt> statements) {
+        StmtNode program = compile(statements);
+        try {
+            program.execute(null);
+        } catch (InterpreterError error) {
+            interpreter.reporter.error(error);
+        }
+    }
+
+    StmtNode compile(List<Stmt> statements) {
+        StmtNode[] nodes = new StmtNode[statements.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = statements.get(i).accept(this);
+        }
+
+        switch (nodes.length) {
+            case 0:
+                return NOTHING;
+            case 1:
+                return nodes[0];
+            case 2:
+                StmtNode first = nodes[0];
+                StmtNode second = nodes[1];
+                return environment -> {
+                    first.execute(environment);
+                    second.execute(environment);
+                };
+            default:
+                return environment -> {
+                    for (StmtNode node : nodes) {
+                        node.execute(environment);
+                    }
+                };
+        }
+    }
+
+    private ExprNode compile(Expr expression) {
+        return expression.accept(this);
+    }
+
+    private StmtNode compileScope(List<Stmt> statements) {
+        scopeDepth++;
+        StmtNode body = compile(statements);
+        scopeDepth--;
+        return body;
+    }
+
+    @Override
+    public ExprNode visitLiteralExpr(Literal expr) {
+        Object value = expr.value;
+        return environment -> value;
+    }
+
+    @Override
+    public ExprNode visitGroupingExpr(Grouping expr) {
+        // grouping only matters to the parser
+        return compile(expr.expression);
+    }
+
+    @Override
+    public ExprNode visitVariableExpr(Variable expr) {
+        return read(expr.name, expr.depth, expr.slot);
+    }
+
+    @Override
+    public ExprNode visitThisExpr(This expr) {
+        return read(expr.keyword, expr.depth, expr.slot);
+    }
+
+    private ExprNode read(Token name, int depth, int slot) {
+        switch (depth) {
+            case -1:
+                return environment -> globals.get(name);
+            case 0:
+                return environment -> environment.get(slot);
+            default:
+                return environment -> environment.getAt(depth, slot);
+        }
+    }
+
+    @Override
+    public ExprNode visitAssignExpr(Assign expr) {
+        ExprNode value = compile(expr.value);
+        Token name = expr.name;
+        int slot = expr.slot;
+        int depth = expr.depth;
+
+        switch (depth) {
+            case -1:
+                return environment -> {
+                    Object result = value.evaluate(environment);
+                    globals.assign(name, result);
+                    return result;
+                };
+            case 0:
+                return environment -> {
+                    Object result = value.evaluate(environment);
+                    environment.assign(slot, result);
+                    return result;
+                };
+            default:
+                return environment -> {
+                    Object result = value.evaluate(environment);
+                    environment.assignAt(depth, slot, result);
+                    return result;
+                };
+        }
+    }
+
+    @Override
+    public ExprNode visitBinaryExpr(Binary expr) {
+        ExprNode left = compile(expr.left);
+
+        if (expr.right instanceof Literal && ((Literal) expr.right).value instanceof Double) {
+            ExprNode node = OperatorNodes.binaryWithConstant(left, expr.operator, (double) ((Literal) expr.right).value);
+            if (node != null) {
+                return node;
+            }
+        }
+
+        return OperatorNodes.binary(left, expr.operator, compile(expr.right));
+    }
+
+    @Override
+    public ExprNode visitLogicalExpr(Logical expr) {
+        return OperatorNodes.logical(compile(expr.left), expr.operator, compile(expr.right));
+    }
+
+    @Override
+    public ExprNode visitUnaryExpr(Unary expr) {
+        return OperatorNodes.unary(expr.operator, compile(expr.right));
+    }
+
+    @Override
+    public ExprNode visitCallExpr(Call expr) {
+        ExprNode[] arguments = new ExprNode[expr.arguments.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = compile(expr.arguments.get(i));
+        }
+        Token paren = expr.paren;
+
+        if (expr.callee instanceof Get) {
+            return invoke((Get) expr.callee, arguments, paren);
+        }
+
+        ExprNode callee = compile(expr.callee);
+        return environment -> call(callee.evaluate(environment), arguments, paren, environment);
+    }
+
+    /**
+     * Node for a method that is called right where it is read, which runs it
+     * without binding it to the receiver first.
+     */
+    private ExprNode invoke(Get callee, ExprNode[] arguments, Token paren) {
+        ExprNode object = compile(callee.object);
+        Token name = callee.name;
+        PropertyCache cache = callee.cache;
+
+        return environment -> {
+            Object receiver = object.evaluate(environment);
+            if (receiver instanceof LoxInstance) {
+                LoxInstance instance = (LoxInstance) receiver;
+                LoxFunction method = instance.lookupMethod(name, cache);
+                // getters run when read, the call is on their result
+                if (method != null && method.arity() > 0) {
+                    return instance.invoke(method, interpreter, evaluate(arguments, method, paren, environment));
+                }
+            }
+            return call(property(receiver, name, cache), arguments, paren, environment);
+        };
+    }
+
+    private Object call(Object function, ExprNode[] arguments, Token paren, LocalEnvironment environment) {
+        if (!(function instanceof LoxCallable)) {
+            throw new InterpreterError(paren, "Can only call functions and classes.");
+        }
+
+        LoxCallable callable = (LoxCallable) function;
+        return callable.call(interpreter, evaluate(arguments, callable, paren, environment));
+    }
+
+    private Object[] evaluate(ExprNode[] arguments, LoxCallable callable, Token paren, LocalEnvironment environment) {
+        Object[] values = new Object[Math.max(arguments.length, callable.frameSize())];
+        for (int i = 0; i < arguments.length; i++) {
+            values[i] = arguments[i].evaluate(environment);
+        }
+
+        if (arguments.length != callable.arity()) {
+            throw new InterpreterError(paren,
+                "Expected " + callable.arity() + " arguments, got " + arguments.length + ".");
+        }
+        return values;
+    }
+
+    @Override
+    public ExprNode visitGetExpr(Get expr) {
+        ExprNode object = compile(expr.object);
+        Token name = expr.name;
+        PropertyCache cache = expr.cache;
+        return environment -> property(object.evaluate(environment), name, cache);
+    }
+
+    private Object property(Object instance, Token name, PropertyCache cache) {
+        if (instance instanceof LoxInstance) {
+            return ((LoxInstance) instance).read(name, cache, interpreter);
+        }
+
+        throw new InterpreterError(name, "Only instances have properties.");
+    }
+
+    @Override
+    public ExprNode visitSetExpr(Set expr) {
+        ExprNode object = compile(expr.object);
+        ExprNode value = compile(expr.value);
+        Token name = expr.name;
+        PropertyCache cache = expr.cache;
+
+        return environment -> {
+            Object instance = object.evaluate(environment);
+            if (!(instance instanceof LoxInstance)) {
+                throw new RuntimeError("Only instances have names");
+            }
+
+            Object result = value.evaluate(environment);
+            ((LoxInstance) instance).set(name, cache, result);
+            return result;
+        };
+    }
+
+    @Override
+    public StmtNode visitExpressionStmt(Expression stmt) {
+        ExprNode expression = compile(stmt.expression);
+        return environment -> expression.evaluate(environment);
+    }
+
+    @Override
+    public StmtNode visitPrintStmt(Print stmt) {
+        ExprNode expression = compile(stmt.expression);
+        return environment -> interpreter.print(expression.evaluate(environment));
+    }
+
+    @Override
+    public StmtNode visitVarStmt(Var stmt) {
+        String name = stmt.name.lexeme;
+
+        if (stmt.initializer == null && scopeDepth == 0) {
+            // globals must not be read before they got a value
+            return environment -> globals.define(name, null);
+        }
+
+        return define(stmt.name, stmt.cell, stmt.initializer == null ? NIL : compile(stmt.initializer));
+    }
+
+    /**
+     * @param cell whether the variable lives in a cell, which exists before
+     *        its value so functions and classes can capture themselves
+     */
+    private StmtNode define(Token name, boolean cell, ExprNode value) {
+        if (scopeDepth == 0) {
+            String identifier = name.lexeme;
+            return environment -> globals.initialize(identifier, value.evaluate(environment));
+        }
+        if (cell) {
+            return environment -> {
+                environment.defineCell(null);
+                environment.initialize(value.evaluate(environment));
+            };
+        }
+        return environment -> environment.define(value.evaluate(environment));
+    }
+
+    @Override
+    public StmtNode visitFunctionStmt(Function stmt) {
+        StmtNode body = compileScope(stmt.body);
+        return define(stmt.name, stmt.cell, environment ->
+            new CompiledFunction(stmt, LocalEnvironment.capture(environment, stmt.captures), false, body));
+    }
+
+    @Override
+    public StmtNode visitClassStmt(Class stmt) {
+        Map<Function, StmtNode> bodies = new HashMap<>();
+        for (Function method : stmt.methods) {
+            bodies.put(method, compileScope(method.body));
+        }
+        for (Function method : stmt.classMethods) {
+            bodies.put(method, compileScope(method.body));
+        }
+
+        Shape emptyShape = interpreter.emptyShape;
+        return define(stmt.name, stmt.cell,
+            environment -> CompiledFunction.makeClass(stmt, bodies, environment, emptyShape));
+    }
+
+    @Override
+    public StmtNode visitBlockStmt(Block stmt) {
+        StmtNode body = compileScope(stmt.statements);
+        boolean scoped = stmt.scoped;
+        return environment -> {
+            try {
+                body.execute(scoped ? new LocalEnvironment(environment) : environment);
+            } catch (Break breakStatement) {
+                throw new SyntaxError("break can not occur outside of while loop");
+            }
+        };
+    }
+
+    @Override
+    public StmtNode visitIfStmt(If stmt) {
+        ExprNode condition = compile(stmt.condition);
+        StmtNode thenBranch = stmt.thenBranch.accept(this);
+        StmtNode elseBranch = stmt.elseBranch == null ? NOTHING : stmt.elseBranch.accept(this);
+
+        return environment -> {
+            if (Interpreter.isTruthy(condition.evaluate(environment))) {
+                thenBranch.execute(environment);
+            } else {
+                elseBranch.execute(environment);
+            }
+        };
+    }
+
+    @Override
+    public StmtNode visitForStmt(For stmt) {
+        return CountedLoops.node(stmt, compile(stmt.limit), stmt.body.accept(this), interpreter.budget);
+    }
+
+    @Override
+    public StmtNode visitWhileStmt(While stmt) {
+        ExprNode condition = compile(stmt.condition);
+        StmtNode body = stmt.body.accept(this);
+        Budget budget = interpreter.budget;
+
+        if (budget != null) {
+            return environment -> {
+                try {
+                    while (Interpreter.isTruthy(condition.evaluate(environment))) {
+                        budget.charge();
+                        body.execute(environment);
+                    }
+                } catch (Break breakStatement) {
+                    return;
+                }
+            };
+        }
+
+        return environment -> {
+            try {
+                while (Interpreter.isTruthy(condition.evaluate(environment))) {
+                    body.execute(environment);
+                }
+            } catch (Break breakStatement) {
+                return;
+            }
+        };
+    }
+
+    @Override
+    public StmtNode visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.expression == null) {
+            return environment -> {
+                throw new Return(null);
+            };
+        }
+
+        ExprNode value = compile(stmt.expression);
+        return environment -> {
+            throw new Return(value.evaluate(environment));
+        };
+    }
+
+    @Override
+    public StmtNode visitBreakStmt(Stmt.Break stmt) {
+        return environment -> {
+            throw Break.INSTANCE;
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A function whose body was compiled by the {@link ClosureCompiler}.
+ */
+class CompiledFunction extends LoxFunction {
+
+    private final ClosureCompiler.StmtNode body;
+
+    CompiledFunction(Stmt.Function declaration, LocalEnvironment closure, boolean isInitializer,
+            ClosureCompiler.StmtNode body) {
+        super(declaration, closure, isInitializer);
+        this.body = body;
+    }
+
+    /**
+     * @param bodies the compiled body of each method
+     * @param environment the scope the class is declared in
+     * @param emptyShape see {@link Interpreter#emptyShape}
+     */
+    static LoxClass makeClass(Stmt.Class declaration, Map<Stmt.Function, ClosureCompiler.StmtNode> bodies,
+            LocalEnvironment environment, Shape emptyShape) {
+        // the methods share what the class captures
+        LocalEnvironment closure = LocalEnvironment.capture(environment, declaration.captures);
+        Map<String, LoxFunction> methods = new HashMap<>();
+        for (Stmt.Function method : declaration.methods) {
+            boolean isInitializer = method.name.lexeme.equals("init");
+            methods.put(method.name.lexeme,
+                new CompiledFunction(method, closure, isInitializer, bodies.get(method)));
+        }
+
+        Map<String, LoxFunction> classMethods = new HashMap<>();
+        for (Stmt.Function method : declaration.classMethods) {
+            classMethods.put(method.name.lexeme,
+                new CompiledFunction(method, closure, false, bodies.get(method)));
+        }
+
+        return new LoxClass(declaration.name.lexeme, methods, classMethods, emptyShape);
+    }
+
+    @Override
+    Object call(Interpreter interpreter, LocalEnvironment closure, Object[] arguments) {
+        if (interpreter.budget != null) interpreter.budget.charge();
+        LocalEnvironment local = frame(closure, arguments);
+
+        try {
+            body.execute(local);
+        } catch (Return result) {
+            if (isInitializer) {
+                return closure.get(0);
+            }
+            return result.value;
+        } catch (Break breakStatement) {
+            throw new SyntaxError("break can not occur outside of while loop");
+        }
+
+        if (isInitializer) return closure.get(0);
+
+        return null;
+    }
+
+    @Override
+    LoxFunction withClosure(LocalEnvironment closure) {
+        return new CompiledFunction(declaration, closure, isInitializer, body);
+    }
+}
@@ -0,0 +1,28 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A script scanned, parsed and resolved without errors, ready to be executed
+ * by any {@link Interpreter} that has the globals it uses.
+ */
+final class CompiledScript {
+
+    final List<Stmt> statements;
+    // globals the script uses without declaring them itself
+    final Set<String> globals;
+
+    CompiledScript(List<Stmt> statements, Set<String> globals) {
+        this.statements = statements;
+        this.globals = globals;
+    }
+
+    /**
+     * @return false if the script was resolved against a global that is not
+     *         in the given environment, so it has to be resolved again
+     */
+    boolean canRunWith(Environment environment) {
+        return environment.names().containsAll(globals);
+    }
+}
@@ -0,0 +1,161 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.craftinginterpreters.lox.ClosureCompiler.ExprNode;
+import com.craftinginterpreters.lox.ClosureCompiler.StmtNode;
+
+/**
+ * Loops counting a local variable by a constant step, the way
+ * {@code for (var i = 0; i < n; i = i + 1)} desugars. The {@link Optimizer}
+ * turns them into a {@link Stmt.For}, which keeps the counter as a double
+ * and only boxes it into its slot when the loop reads it anywhere else.
+ */
+final class CountedLoops {
+
+    private CountedLoops() {
+    }
+
+    /**
+     * Recognizes the statements of a block that declares the counter and then
+     * loops while comparing it, with a body ending in its increment. Nothing
+     * else may assign the counter.
+     *
+     * @param resolved the statements the resolver saw, which it knows the
+     *        declarations of
+     * @param statements the same statements once optimized, where a folded
+     *        initializer makes a new declaration
+     * @return the loop to run after the declaration, or null if it is none
+     */
+    static Stmt.For match(List<Stmt> resolved, List<Stmt> statements, Resolver resolver) {
+        if (statements.size() != 2 || !(resolved.get(0) instanceof Stmt.Var)
+            || !(statements.get(1) instanceof Stmt.While)) {
+            return null;
+        }
+        Stmt.Var declaration = (Stmt.Var) resolved.get(0);
+        Stmt.While loop = (Stmt.While) statements.get(1);
+        if (!(loop.condition instanceof Expr.Binary) || resolver.assignments().getOrDefault(declaration, 0) != 1) {
+            return null;
+        }
+
+        Expr.Binary condition = (Expr.Binary) loop.condition;
+        Expr.Assign increment = increment(loop.body);
+        if (!reads(condition.left, declaration, resolver) || !isComparison(condition.operator)
+            || increment == null || increment.depth != 0 || increment.slot != ((Expr.Variable) condition.left).slot) {
+            return null;
+        }
+
+        Double step = step(increment.value, declaration, resolver);
+        if (step == null) {
+            return null;
+        }
+        Stmt body = ((Stmt.Block) loop.body).statements.get(0);
+        Stmt.For counted = new Stmt.For((Expr.Variable) condition.left, condition.operator, condition.right, step, body);
+        // the condition and the increment read it once each
+        counted.materialized = resolver.reads().get(declaration) > 2;
+        return counted;
+    }
+
+    private static boolean isComparison(Token operator) {
+        switch (operator.type) {
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the assignment ending a loop body without declarations
+     */
+    private static Expr.Assign increment(Stmt body) {
+        if (!(body instanceof Stmt.Block) || ((Stmt.Block) body).scoped) {
+            return null;
+        }
+        List<Stmt> statements = ((Stmt.Block) body).statements;
+        if (statements.size() != 2 || !(statements.get(1) instanceof Stmt.Expression)) {
+            return null;
+        }
+        Expr expression = ((Stmt.Expression) statements.get(1)).expression;
+        return expression instanceof Expr.Assign ? (Expr.Assign) expression : null;
+    }
+
+    /**
+     * @return the number the value adds to the counter, like 1 for
+     *         {@code i + 1} or -2 for {@code i - 2}, or null if it is no step
+     */
+    private static Double step(Expr value, Stmt.Var declaration, Resolver resolver) {
+        if (!(value instanceof Expr.Binary)) {
+            return null;
+        }
+        Expr.Binary binary = (Expr.Binary) value;
+        TokenType operator = binary.operator.type;
+        if (reads(binary.left, declaration, resolver) && binary.right instanceof Expr.Literal
+            && ((Expr.Literal) binary.right).value instanceof Double) {
+            double step = (double) ((Expr.Literal) binary.right).value;
+            if (operator == TokenType.PLUS) {
+                return step;
+            }
+            return operator == TokenType.MINUS ? -step : null;
+        }
+        if (operator == TokenType.PLUS && reads(binary.right, declaration, resolver)
+            && binary.left instanceof Expr.Literal && ((Expr.Literal) binary.left).value instanceof Double) {
+            return (Double) ((Expr.Literal) binary.left).value;
+        }
+        return null;
+    }
+
+    private static boolean reads(Expr expression, Stmt.Var declaration, Resolver resolver) {
+        return expression instanceof Expr.Variable && resolver.declarations().get(expression) == declaration;
+    }
+
+    /**
+     * Node of the {@link ClosureCompiler} for a counted loop.
+     */
+    static StmtNode node(Stmt.For stmt, ExprNode limit, StmtNode body, Budget budget) {
+        Token operator = stmt.operator;
+        int slot = stmt.counter.slot;
+        double step = stmt.step;
+        boolean materialized = stmt.materialized;
+        return environment -> {
+            double bound = Numbers.check(operator, limit.evaluate(environment));
+            double counter = Numbers.check(operator, environment.get(slot));
+            while (Numbers.compare(operator, counter, bound)) {
+                if (budget != null) {
+                    budget.charge();
+                }
+                try {
+                    body.execute(environment);
+                } catch (Break breakStatement) {
+                    throw new SyntaxError("break can not occur outside of while loop");
+                }
+                counter += step;
+                if (materialized) {
+                    environment.assign(slot, Numbers.box(counter));
+                }
+                bound = Numbers.check(operator, limit.evaluate(environment));
+            }
+        };
+    }
+
+    /**
+     * @return the while loop the counted loop was made of, for the engines
+     *         without a counted loop of their own
+     */
+    static Stmt.While toWhile(Stmt.For stmt) {
+        Expr.Variable counter = stmt.counter;
+        Token plus = new Token(TokenType.PLUS, "+", null, stmt.operator.line);
+        Expr.Assign increment = new Expr.Assign(counter.name,
+            new Expr.Binary(counter, plus, new Expr.Literal(Numbers.box(stmt.step))));
+        increment.depth = counter.depth;
+        increment.slot = counter.slot;
+
+        Stmt.Block body = new Stmt.Block(Arrays.asList(stmt.body, new Stmt.Expression(increment)));
+        body.scoped = false;
+        return new Stmt.While(new Expr.Binary(counter, stmt.operator, stmt.limit), body);
+    }
+}
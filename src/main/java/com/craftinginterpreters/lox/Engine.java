@@ -0,0 +1,36 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Engines that can execute a resolved program, selected with --engine.
+ */
+public enum Engine {
+
+    /** Walks the AST, see {@link Interpreter}. */
+    TREE("tree"),
+    /** Compiles the AST into closures first, see {@link ClosureCompiler}. */
+    CLOSURE("closure"),
+    /** Compiles the AST to bytecode, see {@link VirtualMachine}. */
+    VM("vm");
+
+    private final String name;
+
+    Engine(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the engine with the given name, or null if there is none
+     */
+    public static Engine byName(String name) {
+        for (Engine engine : values()) {
+            if (engine.name.equals(name)) {
+                return engine;
+            }
+        }
+        return null;
+    }
+}
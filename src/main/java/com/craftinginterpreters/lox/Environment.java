@@ -31,10 +31,22 @@ public class Environment {
         }
     }
 
+    /**
+     * Defines a variable that got a value, even if that value is nil.
+     */
+    void initialize(String name, Object value) {
+        this.values.put(name, value);
+        this.assigned.add(name);
+    }
+
     int count() {
         return values.size();
     }
 
+    Set<String> names() {
+        return values.keySet();
+    }
+
     int countAll() {
         if (enclosing != null) {
             return enclosing.countAll() + count();
@@ -49,14 +61,14 @@ public class Environment {
             if (assigned.contains(identifier)) {
                 return values.get(identifier);
             }
-            throw new RuntimeException("Variable was not assigned before using. Identifier was '" + identifier + "'");
+            throw new RuntimeError("Variable was not assigned before using. Identifier was '" + identifier + "'");
         }
         
         if (enclosing != null) {
             return enclosing.get(name);
         }
 
-        throw new RuntimeException("Undefined variable '" + identifier + "'.");
+        throw new RuntimeError("Undefined variable '" + identifier + "'.");
     }
 
     public void assign(Token name, Object value) {
@@ -70,26 +82,6 @@ public class Environment {
             return;
         }
 
-        throw new RuntimeException("Undefined variable '" + identifier + "'.");
-    }
-
-    private Environment ancestor(int distance) {
-        Environment environment = this;
-        for (int i = 0; i < distance; i++) {
-            environment = environment.enclosing;
-        }
-        return environment;
-    }
-
-    public Object getAt(Integer distance, String name) {
-        return ancestor(distance).values.get(name);
-    }
-
-    public Object getAt(Integer distance, Token name) {
-        return getAt(distance, name.lexeme);
-    }
-
-    public void assignAt(Integer distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+        throw new RuntimeError("Undefined variable '" + identifier + "'.");
     }
 }
@@ -0,0 +1,95 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+
+/**
+ * Where the errors of a script go. Each {@link Interpreter} has its own, so
+ * scripts running side by side do not mix up their errors.
+ */
+final class ErrorReporter {
+
+    // null reports to System.err as it is at that time
+    private final PrintStream err;
+    // errors to report later, null to print them right away
+    private final StringBuilder kept;
+    private boolean hadError = false;
+
+    /**
+     * @param err stream to print errors to, null for System.err
+     */
+    ErrorReporter(PrintStream err) {
+        this(err, null);
+    }
+
+    private ErrorReporter(PrintStream err, StringBuilder kept) {
+        this.err = err;
+        this.kept = kept;
+    }
+
+    /**
+     * @return a reporter that keeps the errors until {@link #reportTo}, so
+     *         errors found on other threads can be reported in order
+     */
+    static ErrorReporter keeping() {
+        return new ErrorReporter(null, new StringBuilder());
+    }
+
+    /**
+     * Reports the errors kept so far to another reporter.
+     */
+    void reportTo(ErrorReporter reporter) {
+        if (hadError) {
+            reporter.stream().print(kept);
+            reporter.hadError = true;
+        }
+    }
+
+    void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    /**
+     * Reports an error that ended the run of a script.
+     */
+    void error(Interpreter.InterpreterError error) {
+        if (error.atToken) {
+            error(error.token, error.getLocalizedMessage());
+        }
+        // TODO: With new statements track the current line, so it can be reported properly
+        int line = (error.token == null) ? 0 : error.token.line;
+        error(line, error.getLocalizedMessage());
+    }
+
+    private void report(int line, String where, String message) {
+        String error = "[line " + line + "] Error " + where + ": " + message;
+        if (kept != null) {
+            kept.append(error).append(System.lineSeparator());
+        } else {
+            stream().println(error);
+        }
+        hadError = true;
+    }
+
+    private PrintStream stream() {
+        return err != null ? err : System.err;
+    }
+
+    boolean hadError() {
+        return hadError;
+    }
+
+    /**
+     * Forgets earlier errors, like before the next line of the prompt.
+     */
+    void reset() {
+        hadError = false;
+    }
+}
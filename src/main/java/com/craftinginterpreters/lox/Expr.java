@@ -27,6 +27,8 @@ abstract class Expr implements Input {
   static class Assign extends Expr {
     final Token name;
     final Expr value;
+    int depth = -1;
+    int slot = -1;
 
     Assign(Token name, Expr value) {
       this.name = name;
@@ -76,6 +78,7 @@ abstract class Expr implements Input {
   static class Get extends Expr {
     final Expr object;
     final Token name;
+    PropertyCache cache = new PropertyCache();
 
     Get(Expr object, Token name) {
       this.object = object;
@@ -92,6 +95,7 @@ abstract class Expr implements Input {
     final Expr object;
     final Token name;
     final Expr value;
+    PropertyCache cache = new PropertyCache();
 
     Set(Expr object, Token name, Expr value) {
       this.object = object;
@@ -107,6 +111,8 @@ abstract class Expr implements Input {
 
   static class This extends Expr {
     final Token keyword;
+    int depth = -1;
+    int slot = -1;
 
     This(Token keyword) {
       this.keyword = keyword;
@@ -163,6 +169,8 @@ abstract class Expr implements Input {
 
   static class Variable extends Expr {
     final Token name;
+    int depth = -1;
+    int slot = -1;
 
     Variable(Token name) {
       this.name = name;
@@ -1,8 +1,8 @@
 package com.craftinginterpreters.lox;
 
+import java.io.PrintStream;
 import java.util.List;
 import java.util.Map;
-import java.util.ArrayList;
 import java.util.HashMap;
 
 import com.craftinginterpreters.lox.Expr.Assign;
@@ -18,6 +18,7 @@ import com.craftinginterpreters.lox.Expr.Variable;
 import com.craftinginterpreters.lox.Stmt.Block;
 import com.craftinginterpreters.lox.Stmt.Class;
 import com.craftinginterpreters.lox.Stmt.Expression;
+import com.craftinginterpreters.lox.Stmt.For;
 import com.craftinginterpreters.lox.Stmt.Function;
 import com.craftinginterpreters.lox.Stmt.If;
 import com.craftinginterpreters.lox.Stmt.Print;
@@ -28,35 +29,65 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   public static class InterpreterError extends RuntimeException {
     final Token token;
+    // whether the report also points at the token, see Interpreter.error
+    final boolean atToken;
 
     /**
      * @param message
      * @param token
      */
     public InterpreterError(String message, Token token) {
-      super(message);
-      this.token = token;
+      this(message, token, false);
     }
 
     public InterpreterError(Token token, String message) {
-      this(message, token);
+      this(message, token, false);
+    }
+
+    private InterpreterError(String message, Token token, boolean atToken) {
+      super(message);
+      this.token = token;
+      this.atToken = atToken;
     }
   }
 
   final Environment globals = new Environment();
-  private Environment environment = new Environment(globals);
-  private final Map<Expr, Integer> locals = new HashMap<>();
-
-  Interpreter() {
+  // where the shapes of the instances made by this interpreter start from
+  final Shape emptyShape = Shape.empty();
+  final ErrorReporter reporter;
+  // null prints to System.out as it is at that time
+  private final PrintStream out;
+  // limits of the script, null if there are none
+  Budget budget = null;
+  // null while executing top-level code, whose variables live in globals
+  private LocalEnvironment environment = null;
+
+  /**
+   * An interpreter printing to System.out and System.err.
+   */
+  public Interpreter() {
+    this(null, null);
+  }
+
+  /**
+   * An interpreter of its own, which can run next to others on other
+   * threads.
+   *
+   * @param out stream for print statements, null for System.out
+   * @param err stream for errors, null for System.err
+   */
+  public Interpreter(PrintStream out, PrintStream err) {
+    this.out = out;
+    this.reporter = new ErrorReporter(err);
     globals.define("clock", new LoxCallable() {
       
       @Override
-      public Integer arity() {
+      public int arity() {
         return 0;
       }
 
       @Override
-      public Object call(Interpreter interpreter, List<Object> arguments) {
+      public Object call(Interpreter interpreter, Object[] arguments) {
         return (double) System.currentTimeMillis() / 1000.0;
       }
 
@@ -73,21 +104,20 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         execute(statment);
       }
     } catch (InterpreterError error) {
-      // TODO: With new statements track the current line, so it can be reported properly
-      int line = (error.token == null) ? 0 : error.token.line;
-      Lox.error(line, error.getLocalizedMessage());
+      reporter.error(error);
     }
   }
 
-  private void execute(Stmt statement) {
-    statement.accept(this);
+  void print(Object value) {
+    (out != null ? out : System.out).println(stringify(value));
   }
 
-  void resolve(Expr expr, int depth) {
-    locals.put(expr, depth);
+  private void execute(Stmt statement) {
+    if (budget != null) budget.charge();
+    statement.accept(this);
   }
 
-  private String stringify(Object object) {
+  static String stringify(Object object) {
     if (object == null)
       return "nil";
 
@@ -106,47 +136,41 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     return expression.accept(this);
   }
 
-  private InterpreterError error(Token token, String message) {
-    Lox.error(token, message);
-    return new InterpreterError(message, token);
+  /**
+   * @return an error that is reported at the token as well
+   */
+  static InterpreterError error(Token token, String message) {
+    return new InterpreterError(message, token, true);
   }
 
   @Override
   public Object visitBinaryExpr(Binary expr) {
+    switch (expr.operator.type) {
+      case MINUS:
+      case STAR:
+      case SLASH:
+        return Numbers.box(arithmetic(expr));
+      case GREATER:
+      case GREATER_EQUAL:
+      case LESS:
+      case LESS_EQUAL:
+        return compare(expr);
+      default:
+        break;
+    }
+
     Object left = evaluate(expr.left);
     Object right = evaluate(expr.right);
 
     switch (expr.operator.type) {
-      case MINUS:
-        checkNumberOperand(expr.operator, left, right);
-        return (double) left - (double) right;
       case PLUS:
         if (left instanceof Double && right instanceof Double) {
-          return (double) left + (double) right;
+          return Numbers.box((double) left + (double) right);
         } else if (left instanceof String && right instanceof String) {
           return (String) left + (String) right;
         }
 
-        error(expr.operator, "operands must be either both numbers or both Strings");
-      case STAR:
-        checkNumberOperand(expr.operator, left, right);
-        return (double) left * (double) right;
-      case SLASH:
-        checkNumberOperand(expr.operator, left, right);
-        guardAgainstDiv0(expr, right);
-        return (double) left / (double) right;
-      case GREATER:
-        checkNumberOperand(expr.operator, left, right);
-        return (double) left > (double) right;
-      case GREATER_EQUAL:
-        checkNumberOperand(expr.operator, left, right);
-        return (double) left >= (double) right;
-      case LESS:
-        checkNumberOperand(expr.operator, left, right);
-        return (double) left < (double) right;
-      case LESS_EQUAL:
-        checkNumberOperand(expr.operator, left, right);
-        return (double) left <= (double) right;
+        throw error(expr.operator, "operands must be either both numbers or both Strings");
       case BANG_EQUAL:
         return !isEqual(left, right);
       case EQUAL_EQUAL:
@@ -158,46 +182,90 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     return null;
   }
 
+  /**
+   * Calculates {@code -}, {@code *} and {@code /} without boxing the results
+   * of nested arithmetic, which are numbers or fail on their own.
+   */
+  private double arithmetic(Binary expr) {
+    Binary nested = Numbers.arithmetic(expr.left);
+    if (nested != null) {
+      double left = arithmetic(nested);
+      return Numbers.calculate(expr.operator, left, number(expr.operator, expr.right));
+    }
+
+    // the right operand is evaluated before the left one is checked
+    Object left = evaluate(expr.left);
+    double right = number(expr.operator, expr.right);
+    return Numbers.calculate(expr.operator, Numbers.check(expr.operator, left), right);
+  }
+
+  private boolean compare(Binary expr) {
+    Object value = evaluate(expr.left);
+    double right = number(expr.operator, expr.right);
+    return Numbers.compare(expr.operator, Numbers.check(expr.operator, value), right);
+  }
+
+  private double number(Token operator, Expr operand) {
+    Binary nested = Numbers.arithmetic(operand);
+    if (nested != null) {
+      return arithmetic(nested);
+    }
+    return Numbers.check(operator, evaluate(operand));
+  }
+
   @Override
   public Object visitCallExpr(Expr.Call expr) {
-    Object callee = evaluate(expr.callee);
-    
+    if (expr.callee instanceof Get) {
+      return invoke((Get) expr.callee, expr);
+    }
+    return call(evaluate(expr.callee), expr);
+  }
+
+  /**
+   * Calls a method right where it is read, without binding it to the
+   * receiver first.
+   */
+  private Object invoke(Get callee, Expr.Call expr) {
+    Object object = evaluate(callee.object);
+    if (object instanceof LoxInstance) {
+      LoxInstance instance = (LoxInstance) object;
+      LoxFunction method = instance.lookupMethod(callee.name, callee.cache);
+      // getters run when read, the call is on their result
+      if (method != null && method.arity() > 0) {
+        return instance.invoke(method, this, arguments(expr, method));
+      }
+    }
+    return call(property(object, callee), expr);
+  }
+
+  private Object call(Object callee, Expr.Call expr) {
     if (!(callee instanceof LoxCallable)) {
       throw new InterpreterError(expr.paren, "Can only call functions and classes.");
     }
     
-    List<Object> arguments = new ArrayList<>();
-    for (Expr argument : expr.arguments) {
-      arguments.add(evaluate(argument));
-    }
-
     LoxCallable function = (LoxCallable) callee;
-
-    if (arguments.size() != function.arity()) {
-      throw new InterpreterError(expr.paren,
-          "Expected " + 
-          function.arity() + " arguments, got " +
-           arguments.size() + ".");
-    }
-
-    return function.call(this, arguments);
+    return function.call(this, arguments(expr, function));
   }
 
-  private void guardAgainstDiv0(Binary expr, Object right) {
-    if (0 == (double) right) {
-      throw error(expr.operator, "Division by 0");
+  private Object[] arguments(Expr.Call expr, LoxCallable function) {
+    int argumentCount = expr.arguments.size();
+
+    // the arguments go right where the callee keeps its variables
+    Object[] arguments = new Object[Math.max(argumentCount, function.frameSize())];
+    for (int i = 0; i < argumentCount; i++) {
+      arguments[i] = evaluate(expr.arguments.get(i));
     }
-  }
 
-  private void checkNumberOperand(Token token, Object... operands) {
-    for (Object operand : operands) {
-      if (!(operand instanceof Double)) {
-        throw error(token, "Operand must be a number");
-      }
+    if (argumentCount != function.arity()) {
+      throw new InterpreterError(expr.paren,
+          "Expected " + 
+          function.arity() + " arguments, got " +
+           argumentCount + ".");
     }
+    return arguments;
   }
 
-  private boolean isEqual(Object left, Object right) {
+  static boolean isEqual(Object left, Object right) {
     if (left == null && right == null)
       return true;
     if (left == null)
@@ -235,8 +303,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     switch (expr.operator.type) {
       case MINUS:
-        checkNumberOperand(expr.operator, right);
-        return -(double) right;
+        return Numbers.box(-Numbers.check(expr.operator, right));
 
       case BANG:
         return !isTruthy(right);
@@ -247,7 +314,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     return null;
   }
 
-  private boolean isTruthy(Object object) {
+  static boolean isTruthy(Object object) {
     if (object == null)
       return false;
     if (object instanceof Boolean)
@@ -258,13 +325,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Object visitGetExpr(Get expr) {
-    Object object = evaluate(expr.object);
+    return property(evaluate(expr.object), expr);
+  }
+
+  private Object property(Object object, Get expr) {
     if (object instanceof LoxInstance) {
-      Object result = ((LoxInstance) object).get(expr.name);
-      if (result instanceof LoxFunction && ((LoxFunction)result).arity() == 0) {
-        return ((LoxFunction)result).call(this, List.of());
-      }
-      return result;
+      return ((LoxInstance) object).read(expr.name, expr.cache, this);
     }
     
     throw new InterpreterError(expr.name, "Only instances have properties.");
@@ -280,14 +346,14 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     Object value = evaluate(expr.value);
     LoxInstance instance = (LoxInstance)object;
-    instance.set(expr.name, value);
+    instance.set(expr.name, expr.cache, value);
 
     return value;
   }
   
   @Override
   public Object visitThisExpr(This expr) {
-    return lookupVariable(expr.keyword, expr);
+    return lookupVariable(expr.keyword, expr.depth, expr.slot);
   }
 
   @Override
@@ -298,16 +364,20 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitFunctionStmt(Function stmt) {
-    LoxFunction function = new LoxFunction(stmt, environment);
-    environment.define(stmt.name.lexeme, function);
-
+    if (stmt.cell) {
+      // it may capture itself, so its cell comes first
+      environment.defineCell(null);
+      environment.initialize(new LoxFunction(stmt, LocalEnvironment.capture(environment, stmt.captures)));
+    } else {
+      define(stmt.name, new LoxFunction(stmt, LocalEnvironment.capture(environment, stmt.captures)));
+    }
     return null;
   }
 
   @Override
   public Void visitPrintStmt(Print stmt) {
     Object value = evaluate(stmt.expression);
-    System.out.println(stringify(value));
+    print(value);
     return null;
   }
 
@@ -323,17 +393,27 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitBreakStmt(Stmt.Break stmt) {
-    throw new Break();
+    throw Break.INSTANCE;
   }
 
   @Override
   public Void visitVarStmt(Var stmt) {
+    if (stmt.initializer == null && environment == null) {
+      // globals must not be read before they got a value
+      globals.define(stmt.name.lexeme, null);
+      return null;
+    }
+
     Object value = null;
     if (stmt.initializer != null) {
       value = evaluate(stmt.initializer);
     }
 
-    environment.define(stmt.name.lexeme, value);
+    if (stmt.cell) {
+      environment.defineCell(value);
+    } else {
+      define(stmt.name, value);
+    }
     return null;
   }
   
@@ -349,16 +429,46 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     return null;
   }
 
+  /**
+   * Counts in a double, and only writes the counter back when the loop reads
+   * it.
+   */
+  @Override
+  public Void visitForStmt(For stmt) {
+    int slot = stmt.counter.slot;
+    double bound = number(stmt.operator, stmt.limit);
+    double counter = Numbers.check(stmt.operator, environment.get(slot));
+    while (Numbers.compare(stmt.operator, counter, bound)) {
+      try {
+        execute(stmt.body);
+      } catch (Break breakStatement) {
+        throw new SyntaxError("break can not occur outside of while loop");
+      }
+      counter += stmt.step;
+      if (stmt.materialized) {
+        environment.assign(slot, Numbers.box(counter));
+      }
+      bound = number(stmt.operator, stmt.limit);
+    }
+    return null;
+  }
+
   @Override
   public Object visitVariableExpr(Variable expr) {
-    return lookupVariable(expr.name, expr);
+    return lookupVariable(expr.name, expr.depth, expr.slot);
   }
 
-  private Object lookupVariable(Token name, Expr expr) {
-    Integer distance = locals.get(expr);
-    if (distance != null) {
-      Object value = environment.getAt(distance, name);
-      return value;
+  private void define(Token name, Object value) {
+    if (environment == null) {
+      globals.initialize(name.lexeme, value);
+    } else {
+      environment.define(value);
+    }
+  }
+
+  private Object lookupVariable(Token name, int depth, int slot) {
+    if (depth >= 0) {
+      return environment.getAt(depth, slot);
     }
 
     return globals.get(name);
@@ -368,9 +478,8 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
   public Object visitAssignExpr(Assign expr) {
     Object value = evaluate(expr.value);
 
-    Integer distance = locals.get(expr);
-    if (distance != null) {
-      environment.assignAt(distance, expr.name, value);
+    if (expr.depth >= 0) {
+      environment.assignAt(expr.depth, expr.slot, value);
     } else {
       
       globals.assign(expr.name, value);
@@ -381,12 +490,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitBlockStmt(Block stmt) {
-    executeBlock(stmt.statements, new Environment(environment));
+    executeBlock(stmt.statements, stmt.scoped ? new LocalEnvironment(environment) : environment);
     return null;
   }
 
-  void executeBlock(List<Stmt> statements, Environment environment) {
-    Environment previous = this.environment;
+  void executeBlock(List<Stmt> statements, LocalEnvironment environment) {
+    LocalEnvironment previous = this.environment;
     try {
       this.environment = environment;
 
@@ -402,13 +511,18 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitClassStmt(Class stmt) {
-    environment.define(stmt.name.lexeme, null);
+    if (stmt.cell) {
+      // its methods may capture the class, so its cell comes first
+      environment.defineCell(null);
+    }
 
+    // the methods share what the class captures
+    LocalEnvironment closure = LocalEnvironment.capture(environment, stmt.captures);
     Map<String, LoxFunction> methods = new HashMap<>();
     for (Stmt.Function method : stmt.methods) {
       LoxFunction function = new LoxFunction(
         method, 
-        environment,
+        closure,
         method.name.lexeme.equals("init")
         );
         methods.put(method.name.lexeme, function);
@@ -416,12 +530,16 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
       
       Map<String, LoxFunction> classMethods = new HashMap<>();
       for (Stmt.Function classMethod : stmt.classMethods) {
-        LoxFunction function = new LoxFunction(classMethod, environment);
+        LoxFunction function = new LoxFunction(classMethod, closure);
         classMethods.put(classMethod.name.lexeme, function);
       }
 
-    LoxClass klass = new LoxClass(stmt.name.lexeme, methods, classMethods);
-    environment.assign(stmt.name, klass);
+    LoxClass klass = new LoxClass(stmt.name.lexeme, methods, classMethods, emptyShape);
+    if (stmt.cell) {
+      environment.initialize(klass);
+    } else {
+      define(stmt.name, klass);
+    }
     return null;
   }
 
@@ -0,0 +1,433 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer for JVM class files, just enough for the {@link JitCompiler}.
+ *
+ * Classes are written in version 49, which lets the JVM infer the types of
+ * stack and locals itself, so no stack map frames have to be computed here.
+ */
+class JitClassWriter {
+
+    private static final int VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    // instructions used by the JitCompiler
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ISTORE = 0x36;
+    static final int DSTORE = 0x39;
+    static final int ASTORE = 0x3a;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int DUP_X2 = 0x5b;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DNEG = 0x77;
+    static final int IXOR = 0x82;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ACMPNE = 0xa6;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int ANEWARRAY = 0xbd;
+    static final int CHECKCAST = 0xc0;
+    static final int INSTANCEOF = 0xc1;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final String name;
+    private final String superName;
+    private final String[] interfaces;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    /**
+     * @param name internal name of the class, like {@code a/b/C}
+     */
+    JitClassWriter(String name, String superName, String... interfaces) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+    }
+
+    private int entry(String key, int slots, PoolWriter writer) {
+        Integer index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            writer.write(pool);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        index = poolCount;
+        poolCount += slots;
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    @FunctionalInterface
+    private interface PoolWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    int utf8(String value) {
+        return entry("U" + value, 1, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    int classRef(String internalName) {
+        int nameIndex = utf8(internalName);
+        return entry("C" + internalName, 1, out -> {
+            out.writeByte(7);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    int string(String value) {
+        int valueIndex = utf8(value);
+        return entry("S" + value, 1, out -> {
+            out.writeByte(8);
+            out.writeShort(valueIndex);
+        });
+    }
+
+    int doubleConstant(double value) {
+        return entry("D" + Double.doubleToRawLongBits(value), 2, out -> {
+            out.writeByte(6);
+            out.writeDouble(value);
+        });
+    }
+
+    private int nameAndType(String memberName, String descriptor) {
+        int nameIndex = utf8(memberName);
+        int descriptorIndex = utf8(descriptor);
+        return entry("N" + memberName + ":" + descriptor, 1, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private int memberRef(int tag, String owner, String memberName, String descriptor) {
+        int classIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(memberName, descriptor);
+        return entry("M" + tag + owner + "." + memberName + ":" + descriptor, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(classIndex);
+            out.writeShort(nameAndTypeIndex);
+        });
+    }
+
+    int fieldRef(String owner, String fieldName, String descriptor) {
+        return memberRef(9, owner, fieldName, descriptor);
+    }
+
+    int methodRef(String owner, String methodName, String descriptor) {
+        return memberRef(10, owner, methodName, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String methodName, String descriptor) {
+        return memberRef(11, owner, methodName, descriptor);
+    }
+
+    void addField(int access, String fieldName, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(fieldName));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    void addMethod(int access, String methodName, String descriptor, Code code) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] instructions = code.toByteArray();
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(methodName));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + instructions.length);
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(instructions.length);
+            out.write(instructions);
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        int thisIndex = classRef(name);
+        int superIndex = classRef(superName);
+        int[] interfaceIndexes = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaceIndexes[i] = classRef(interfaces[i]);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            out.write(poolBytes.toByteArray());
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(interfaceIndexes.length);
+            for (int index : interfaceIndexes) {
+                out.writeShort(index);
+            }
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A jump target inside a {@link Code}.
+     */
+    static class Label {
+        private int offset = -1;
+        private int stackDepth = -1;
+        private final List<Integer> references = new ArrayList<>();
+    }
+
+    private static int argumentSize(String descriptor) {
+        int size = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'D' || c == 'J') {
+                size += 2;
+            } else {
+                size += 1;
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                if (descriptor.charAt(i) == 'L') {
+                    i = descriptor.indexOf(';', i);
+                }
+            }
+            i++;
+        }
+        return size;
+    }
+
+    private static int returnSize(String descriptor) {
+        switch (descriptor.charAt(descriptor.indexOf(')') + 1)) {
+            case 'V':
+                return 0;
+            case 'D':
+            case 'J':
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    Code newCode(int locals) {
+        return new Code(locals);
+    }
+
+    /**
+     * Instructions of a single method. Keeps track of the stack depth so the
+     * maximum can be written to the class file.
+     */
+    class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+        private int stackDepth = 0;
+        private boolean reachable = true;
+        int maxStack = 0;
+        int maxLocals;
+
+        /**
+         * @param locals the number of local slots used by the parameters
+         */
+        private Code(int locals) {
+            this.maxLocals = locals;
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        private void adjust(int stackEffect) {
+            stackDepth += stackEffect;
+            maxStack = Math.max(maxStack, stackDepth);
+        }
+
+        void op(int opCode, int stackEffect) {
+            bytes.write(opCode);
+            adjust(stackEffect);
+            reachable = true;
+        }
+
+        void u1(int value) {
+            bytes.write(value);
+        }
+
+        void u2(int value) {
+            bytes.write(value >> 8);
+            bytes.write(value);
+        }
+
+        /**
+         * Ends the current flow, e.g. after a return or goto.
+         */
+        void terminate() {
+            reachable = false;
+        }
+
+        void local(int opCode, int index, int stackEffect, int slots) {
+            op(opCode, stackEffect);
+            u1(index);
+            maxLocals = Math.max(maxLocals, index + slots);
+        }
+
+        void load(int opCode, int index) {
+            int size = opCode == DLOAD ? 2 : 1;
+            local(opCode, index, size, size);
+        }
+
+        void pushInt(int value) {
+            if (value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value <= Byte.MAX_VALUE) {
+                op(BIPUSH, 1);
+                u1(value);
+            } else {
+                op(SIPUSH, 1);
+                u2(value);
+            }
+        }
+
+        /**
+         * For instructions taking a class, like checkcast or new.
+         */
+        void type(int opCode, String type, int stackEffect) {
+            op(opCode, stackEffect);
+            u2(classRef(type));
+        }
+
+        void field(int opCode, String owner, String fieldName, String descriptor, int stackEffect) {
+            op(opCode, stackEffect);
+            u2(fieldRef(owner, fieldName, descriptor));
+        }
+
+        void invoke(int opCode, String owner, String methodName, String descriptor) {
+            int arguments = argumentSize(descriptor) + (opCode == INVOKESTATIC ? 0 : 1);
+            op(opCode, returnSize(descriptor) - arguments);
+            if (opCode == INVOKEINTERFACE) {
+                u2(interfaceMethodRef(owner, methodName, descriptor));
+                u1(arguments);
+                u1(0);
+            } else {
+                u2(methodRef(owner, methodName, descriptor));
+            }
+        }
+
+        Label newLabel() {
+            Label label = new Label();
+            labels.add(label);
+            return label;
+        }
+
+        void jump(int opCode, Label target, int stackEffect) {
+            int offset = bytes.size();
+            op(opCode, stackEffect);
+            target.references.add(offset);
+            u2(0);
+            target.stackDepth = stackDepth;
+        }
+
+        void mark(Label label) {
+            label.offset = bytes.size();
+            if (!reachable && label.stackDepth >= 0) {
+                // only reached by jumps, so the stack looks like it did there
+                stackDepth = label.stackDepth;
+                reachable = true;
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] code = bytes.toByteArray();
+            for (Label label : labels) {
+                for (int reference : label.references) {
+                    int delta = label.offset - reference;
+                    code[reference + 1] = (byte) (delta >> 8);
+                    code[reference + 2] = (byte) delta;
+                }
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * A {@link LoxFunction} compiled to a JVM class by the {@link JitCompiler}.
+ */
+interface JitCode {
+
+    /** Returned by {@link #invoke} for arguments the compiled code can not handle. */
+    Object FALLBACK = new Object();
+
+    /**
+     * @return the result of the function, or {@link #FALLBACK} when the call
+     *         has to be run by the tree-walker instead
+     */
+    Object invoke(Object[] arguments);
+}
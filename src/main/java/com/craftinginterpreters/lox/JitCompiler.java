@@ -0,0 +1,840 @@
+package com.craftinginterpreters.lox;
+
+import static com.craftinginterpreters.lox.JitClassWriter.*;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.craftinginterpreters.lox.JitClassWriter.Code;
+import com.craftinginterpreters.lox.JitClassWriter.Label;
+
+/**
+ * Compiles a hot {@link LoxFunction} to a JVM class, so HotSpot can optimize
+ * it like any Java code.
+ *
+ * Only functions that keep to their own variables and the globals are
+ * compiled, so no nested functions, classes, properties, this or break.
+ * Locals that only ever hold numbers or booleans live unboxed in JVM locals.
+ * Parameters are expected to be numbers unless they get something else
+ * assigned; calls with other arguments are left to the tree-walker. Calls of
+ * the function to itself go straight to the compiled method, as long as the
+ * global still holds the function.
+ */
+class JitCompiler implements Stmt.Visitor<Void> {
+
+    /**
+     * Type of a value on the JVM stack or in a JVM local.
+     */
+    enum Type {
+        NUMBER("D", 2),
+        BOOLEAN("Z", 1),
+        OBJECT("Ljava/lang/Object;", 1);
+
+        final String descriptor;
+        final int size;
+
+        Type(String descriptor, int size) {
+            this.descriptor = descriptor;
+            this.size = size;
+        }
+    }
+
+    private static class Unsupported extends RuntimeException {
+        Unsupported(String construct) {
+            super(construct + " can not be compiled", null, false, false);
+        }
+    }
+
+    private static class Local {
+        Type type;
+        int index;
+
+        Local(Type type) {
+            this.type = type;
+        }
+    }
+
+    private static final String PACKAGE = "com/craftinginterpreters/lox/";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String TOKEN = PACKAGE + "Token";
+    private static final String ENVIRONMENT = PACKAGE + "Environment";
+    private static final String INTERPRETER = PACKAGE + "Interpreter";
+    private static final String RUNTIME = PACKAGE + "JitRuntime";
+    private static final String CONSTANTS = "[Ljava/lang/Object;";
+
+    /** Jumps only reach 32k bytes. */
+    private static final int MAX_CODE_SIZE = Short.MAX_VALUE;
+
+    private static final AtomicInteger classCount = new AtomicInteger();
+
+    private final LoxFunction function;
+    private final Interpreter interpreter;
+    private final String className;
+    private final Map<Token, Local> locals = new IdentityHashMap<>();
+    private final ExpressionCompiler expressions = new ExpressionCompiler();
+    private final TypeOf typeOf = new TypeOf();
+
+    // state of the current attempt, see compile()
+    private JitClassWriter writer;
+    private Code code;
+    private List<Object> constants;
+    private Map<Object, Integer> constantIndex;
+    private List<List<Token>> scopes;
+    private int nextLocal;
+    private boolean changed;
+
+    private JitCompiler(LoxFunction function, Interpreter interpreter) {
+        this.function = function;
+        this.interpreter = interpreter;
+        this.className = PACKAGE + "Jit$" + function.declaration.name.lexeme + "$" + classCount.incrementAndGet();
+    }
+
+    /**
+     * @return the compiled function, null if it can not be compiled
+     */
+    static JitCode compile(LoxFunction function, Interpreter interpreter) {
+        if (function.isInitializer) {
+            return null;
+        }
+
+        try {
+            return new JitCompiler(function, interpreter).compile();
+        } catch (Unsupported | LinkageError | ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private JitCode compile() throws ReflectiveOperationException {
+        for (Token param : function.declaration.params) {
+            locals.put(param, new Local(Type.NUMBER));
+        }
+
+        // a local assigned a value of another type gets boxed, which changes
+        // the code using it, so compile again until the types are settled
+        do {
+            changed = false;
+            writeClass();
+        } while (changed);
+
+        Class<?> klass = defineClass(writer.toByteArray());
+        return (JitCode) klass.getConstructor(Object[].class).newInstance((Object) constants.toArray());
+    }
+
+    /**
+     * Defines the class next to this one, so it can use the package-private
+     * classes of the interpreter. Lookup.defineClass only came with Java 9,
+     * Java 8 has to call ClassLoader.defineClass.
+     */
+    private static Class<?> defineClass(byte[] bytes) throws ReflectiveOperationException {
+        try {
+            return (Class<?>) MethodHandles.Lookup.class
+                .getMethod("defineClass", byte[].class)
+                .invoke(MethodHandles.lookup(), bytes);
+        } catch (NoSuchMethodException java8) {
+            Method defineClass = ClassLoader.class
+                .getDeclaredMethod("defineClass", String.class, byte[].class, int.class, int.class);
+            defineClass.setAccessible(true);
+            return (Class<?>) defineClass.invoke(JitCompiler.class.getClassLoader(), null, bytes, 0, bytes.length);
+        }
+    }
+
+    private void writeClass() {
+        writer = new JitClassWriter(className, OBJECT, PACKAGE + "JitCode");
+        constants = new ArrayList<>();
+        constantIndex = new IdentityHashMap<>();
+        writer.addField(ACC_FINAL, "constants", CONSTANTS);
+
+        code = writer.newCode(2);
+        code.load(ALOAD, 0);
+        code.invoke(INVOKESPECIAL, OBJECT, "<init>", "()V");
+        code.load(ALOAD, 0);
+        code.load(ALOAD, 1);
+        code.field(PUTFIELD, className, "constants", CONSTANTS, -2);
+        code.op(RETURN, 0);
+        writer.addMethod(ACC_PUBLIC, "<init>", "(" + CONSTANTS + ")V", code);
+
+        String descriptor = bodyDescriptor();
+        writeInvoke(descriptor);
+        writeBody(descriptor);
+    }
+
+    private String bodyDescriptor() {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Token param : function.declaration.params) {
+            descriptor.append(locals.get(param).type.descriptor);
+        }
+        return descriptor.append(")Ljava/lang/Object;").toString();
+    }
+
+    /**
+     * Entry point from {@link LoxFunction#call}, unpacks the arguments.
+     */
+    private void writeInvoke(String descriptor) {
+        List<Token> params = function.declaration.params;
+        code = writer.newCode(2);
+        Label fallback = code.newLabel();
+        for (int i = 0; i < params.size(); i++) {
+            if (locals.get(params.get(i)).type == Type.NUMBER) {
+                loadArgument(i);
+                code.type(INSTANCEOF, "java/lang/Double", 0);
+                code.jump(IFEQ, fallback, -1);
+            }
+        }
+
+        code.load(ALOAD, 0);
+        for (int i = 0; i < params.size(); i++) {
+            loadArgument(i);
+            if (locals.get(params.get(i)).type == Type.NUMBER) {
+                code.type(CHECKCAST, "java/lang/Double", 0);
+                code.invoke(INVOKEVIRTUAL, "java/lang/Double", "doubleValue", "()D");
+            }
+        }
+        code.invoke(INVOKEVIRTUAL, className, "body", descriptor);
+        code.op(ARETURN, -1);
+        code.terminate();
+
+        code.mark(fallback);
+        code.field(GETSTATIC, PACKAGE + "JitCode", "FALLBACK", "Ljava/lang/Object;", 1);
+        code.op(ARETURN, -1);
+        writer.addMethod(ACC_PUBLIC, "invoke", "([Ljava/lang/Object;)Ljava/lang/Object;", code);
+    }
+
+    private void loadArgument(int index) {
+        code.load(ALOAD, 1);
+        code.pushInt(index);
+        code.op(AALOAD, -1);
+    }
+
+    private void writeBody(String descriptor) {
+        nextLocal = 1;
+        List<Token> parameters = new ArrayList<>();
+        for (Token param : function.declaration.params) {
+            Local local = locals.get(param);
+            local.index = nextLocal;
+            nextLocal += local.type.size;
+            parameters.add(param);
+        }
+        scopes = new ArrayList<>();
+        scopes.add(parameters);
+
+        code = writer.newCode(nextLocal);
+        for (Stmt statement : function.declaration.body) {
+            statement.accept(this);
+        }
+        code.op(ACONST_NULL, 1);
+        code.op(ARETURN, -1);
+
+        if (code.size() > MAX_CODE_SIZE) {
+            throw new Unsupported("A function of this size");
+        }
+        writer.addMethod(ACC_FINAL, "body", descriptor, code);
+    }
+
+    // helpers for both statements and expressions
+
+    private void load(Local local) {
+        switch (local.type) {
+            case NUMBER:
+                code.load(DLOAD, local.index);
+                break;
+            case BOOLEAN:
+                code.load(ILOAD, local.index);
+                break;
+            default:
+                code.load(ALOAD, local.index);
+                break;
+        }
+    }
+
+    private void store(Local local) {
+        int size = local.type.size;
+        switch (local.type) {
+            case NUMBER:
+                code.local(DSTORE, local.index, -size, size);
+                break;
+            case BOOLEAN:
+                code.local(ISTORE, local.index, -size, size);
+                break;
+            default:
+                code.local(ASTORE, local.index, -size, size);
+                break;
+        }
+    }
+
+    /**
+     * Pushes an object the generated class gets handed on construction.
+     */
+    private void pushConstant(Object value, String type) {
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndex.put(value, index);
+        }
+
+        code.load(ALOAD, 0);
+        code.field(GETFIELD, className, "constants", CONSTANTS, 0);
+        code.pushInt(index);
+        code.op(AALOAD, -1);
+        if (!type.equals(OBJECT)) {
+            code.type(CHECKCAST, type, 0);
+        }
+    }
+
+    private void pushToken(Token token) {
+        pushConstant(token, TOKEN);
+    }
+
+    private void invokeRuntime(String name, String descriptor) {
+        code.invoke(INVOKESTATIC, RUNTIME, name, descriptor);
+    }
+
+    private void box(Type type) {
+        if (type == Type.NUMBER) {
+            code.invoke(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+        } else if (type == Type.BOOLEAN) {
+            code.invoke(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+        }
+    }
+
+    private void jumpTo(Label label) {
+        code.jump(GOTO, label, 0);
+        code.terminate();
+    }
+
+    private Type compile(Expr expression) {
+        return expression.accept(expressions);
+    }
+
+    private void boxed(Expr expression) {
+        box(compile(expression));
+    }
+
+    /**
+     * Compiles the expression to a boolean telling if it is truthy.
+     */
+    private void condition(Expr expression) {
+        Type type = compile(expression);
+        if (type == Type.NUMBER) {
+            code.op(POP2, -2);
+            code.op(ICONST_1, 1);
+        } else if (type == Type.OBJECT) {
+            code.invoke(INVOKESTATIC, INTERPRETER, "isTruthy", "(Ljava/lang/Object;)Z");
+        }
+    }
+
+    private Local resolve(int depth, int slot) {
+        int scope = scopes.size() - 1 - depth;
+        if (scope < 0) {
+            throw new Unsupported("A variable of an enclosing function");
+        }
+        return locals.get(scopes.get(scope).get(slot));
+    }
+
+    /**
+     * Brings the value on the stack into the form the local holds.
+     */
+    private void convert(Type type, Local local) {
+        if (type != local.type) {
+            if (local.type != Type.OBJECT) {
+                local.type = Type.OBJECT;
+                changed = true;
+            }
+            box(type);
+        }
+    }
+
+    // statements
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        if (stmt.scoped) {
+            scopes.add(new ArrayList<>());
+        }
+        for (Stmt statement : stmt.statements) {
+            statement.accept(this);
+        }
+        if (stmt.scoped) {
+            scopes.remove(scopes.size() - 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        throw new Unsupported("A class");
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        Type type = compile(stmt.expression);
+        code.op(type == Type.NUMBER ? POP2 : POP, -type.size);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        throw new Unsupported("A nested function");
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        Label elseBranch = code.newLabel();
+        condition(stmt.condition);
+        code.jump(IFEQ, elseBranch, -1);
+        stmt.thenBranch.accept(this);
+        if (stmt.elseBranch == null) {
+            code.mark(elseBranch);
+            return null;
+        }
+
+        Label end = code.newLabel();
+        jumpTo(end);
+        code.mark(elseBranch);
+        stmt.elseBranch.accept(this);
+        code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        boxed(stmt.expression);
+        pushConstant(interpreter, INTERPRETER);
+        invokeRuntime("print", "(Ljava/lang/Object;L" + INTERPRETER + ";)V");
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.expression == null) {
+            code.op(ACONST_NULL, 1);
+        } else {
+            boxed(stmt.expression);
+        }
+        code.op(ARETURN, -1);
+        code.terminate();
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        throw new Unsupported("break");
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        Type type;
+        if (stmt.initializer == null) {
+            code.op(ACONST_NULL, 1);
+            type = Type.OBJECT;
+        } else {
+            type = compile(stmt.initializer);
+        }
+
+        Local local = locals.get(stmt.name);
+        if (local == null) {
+            local = new Local(type);
+            locals.put(stmt.name, local);
+        }
+        convert(type, local);
+        local.index = nextLocal;
+        nextLocal += local.type.size;
+        store(local);
+        scopes.get(scopes.size() - 1).add(stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        // numbers in compiled code are primitives already
+        return CountedLoops.toWhile(stmt).accept(this);
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        Label start = code.newLabel();
+        Label end = code.newLabel();
+        code.mark(start);
+        condition(stmt.condition);
+        code.jump(IFEQ, end, -1);
+        stmt.body.accept(this);
+        jumpTo(start);
+        code.mark(end);
+        return null;
+    }
+
+    /**
+     * Compiles expressions, leaving their value on the stack in the form of
+     * the returned type.
+     */
+    private class ExpressionCompiler implements Expr.Visitor<Type> {
+
+        @Override
+        public Type visitAssignExpr(Expr.Assign expr) {
+            if (expr.depth < 0) {
+                pushConstant(interpreter.globals, ENVIRONMENT);
+                pushToken(expr.name);
+                boxed(expr.value);
+                code.op(DUP_X2, 1);
+                code.invoke(INVOKEVIRTUAL, ENVIRONMENT, "assign", "(L" + TOKEN + ";Ljava/lang/Object;)V");
+                return Type.OBJECT;
+            }
+
+            Local local = resolve(expr.depth, expr.slot);
+            convert(compile(expr.value), local);
+            store(local);
+            load(local);
+            return local.type;
+        }
+
+        @Override
+        public Type visitBinaryExpr(Expr.Binary expr) {
+            boolean numbers = typeOf.of(expr.left) == Type.NUMBER && typeOf.of(expr.right) == Type.NUMBER;
+            switch (expr.operator.type) {
+                case PLUS:
+                    if (numbers) {
+                        return arithmetic(expr, DADD);
+                    }
+                    boxed(expr.left);
+                    boxed(expr.right);
+                    pushToken(expr.operator);
+                    invokeRuntime("add", "(Ljava/lang/Object;Ljava/lang/Object;L" + TOKEN + ";)Ljava/lang/Object;");
+                    return Type.OBJECT;
+                case MINUS:
+                    return numbers ? arithmetic(expr, DSUB) : dynamic(expr, "subtract", "D");
+                case STAR:
+                    return numbers ? arithmetic(expr, DMUL) : dynamic(expr, "multiply", "D");
+                case SLASH:
+                    if (numbers) {
+                        compile(expr.left);
+                        compile(expr.right);
+                        pushToken(expr.operator);
+                        invokeRuntime("divide", "(DDL" + TOKEN + ";)D");
+                        return Type.NUMBER;
+                    }
+                    return dynamic(expr, "divide", "D");
+                case GREATER:
+                    return numbers ? comparison(expr, DCMPL, IFLE) : dynamic(expr, "greater", "Z");
+                case GREATER_EQUAL:
+                    return numbers ? comparison(expr, DCMPL, IFLT) : dynamic(expr, "greaterEqual", "Z");
+                case LESS:
+                    return numbers ? comparison(expr, DCMPG, IFGE) : dynamic(expr, "less", "Z");
+                case LESS_EQUAL:
+                    return numbers ? comparison(expr, DCMPG, IFGT) : dynamic(expr, "lessEqual", "Z");
+                case EQUAL_EQUAL:
+                    return equality(expr, numbers);
+                case BANG_EQUAL:
+                    equality(expr, numbers);
+                    return not();
+                default:
+                    throw new Unsupported("The operator " + expr.operator.lexeme);
+            }
+        }
+
+        private Type arithmetic(Expr.Binary expr, int opCode) {
+            compile(expr.left);
+            compile(expr.right);
+            code.op(opCode, -2);
+            return Type.NUMBER;
+        }
+
+        /**
+         * Leaves operands of unknown type to a {@link JitRuntime} method.
+         */
+        private Type dynamic(Expr.Binary expr, String operation, String result) {
+            boxed(expr.left);
+            boxed(expr.right);
+            pushToken(expr.operator);
+            invokeRuntime(operation, "(Ljava/lang/Object;Ljava/lang/Object;L" + TOKEN + ";)" + result);
+            return result.equals("D") ? Type.NUMBER : Type.BOOLEAN;
+        }
+
+        private Type comparison(Expr.Binary expr, int compare, int jumpIfFalse) {
+            compile(expr.left);
+            compile(expr.right);
+            code.op(compare, -3);
+            Label isFalse = code.newLabel();
+            Label end = code.newLabel();
+            code.jump(jumpIfFalse, isFalse, -1);
+            code.op(ICONST_1, 1);
+            jumpTo(end);
+            code.mark(isFalse);
+            code.op(ICONST_0, 1);
+            code.mark(end);
+            return Type.BOOLEAN;
+        }
+
+        private Type equality(Expr.Binary expr, boolean numbers) {
+            if (numbers) {
+                compile(expr.left);
+                compile(expr.right);
+                invokeRuntime("isEqual", "(DD)Z");
+            } else {
+                boxed(expr.left);
+                boxed(expr.right);
+                code.invoke(INVOKESTATIC, INTERPRETER, "isEqual", "(Ljava/lang/Object;Ljava/lang/Object;)Z");
+            }
+            return Type.BOOLEAN;
+        }
+
+        private Type not() {
+            code.op(ICONST_1, 1);
+            code.op(IXOR, -1);
+            return Type.BOOLEAN;
+        }
+
+        @Override
+        public Type visitCallExpr(Expr.Call expr) {
+            Label slowCall = code.newLabel();
+            Label end = code.newLabel();
+            boxed(expr.callee);
+
+            if (isCallOfItself(expr)) {
+                code.op(DUP, 1);
+                pushConstant(function, OBJECT);
+                code.jump(IF_ACMPNE, slowCall, -2);
+                code.op(POP, -1);
+                code.load(ALOAD, 0);
+                List<Token> params = function.declaration.params;
+                for (int i = 0; i < params.size(); i++) {
+                    if (locals.get(params.get(i)).type == Type.OBJECT) {
+                        boxed(expr.arguments.get(i));
+                    } else {
+                        compile(expr.arguments.get(i));
+                    }
+                }
+                code.invoke(INVOKEVIRTUAL, className, "body", bodyDescriptor());
+                jumpTo(end);
+                code.mark(slowCall);
+            }
+
+            pushToken(expr.paren);
+            invokeRuntime("callable", "(Ljava/lang/Object;L" + TOKEN + ";)L" + PACKAGE + "LoxCallable;");
+            code.pushInt(expr.arguments.size());
+            code.type(ANEWARRAY, OBJECT, 0);
+            for (int i = 0; i < expr.arguments.size(); i++) {
+                code.op(DUP, 1);
+                code.pushInt(i);
+                boxed(expr.arguments.get(i));
+                code.op(AASTORE, -3);
+            }
+            pushToken(expr.paren);
+            pushConstant(interpreter, INTERPRETER);
+            invokeRuntime("call", "(L" + PACKAGE + "LoxCallable;[Ljava/lang/Object;L" + TOKEN + ";L" + INTERPRETER
+                + ";)Ljava/lang/Object;");
+            code.mark(end);
+            return Type.OBJECT;
+        }
+
+        private boolean isCallOfItself(Expr.Call expr) {
+            if (!(expr.callee instanceof Expr.Variable)) {
+                return false;
+            }
+            Expr.Variable callee = (Expr.Variable) expr.callee;
+            List<Token> params = function.declaration.params;
+            if (callee.depth >= 0 || !callee.name.lexeme.equals(function.declaration.name.lexeme)
+                || expr.arguments.size() != params.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < params.size(); i++) {
+                Type param = locals.get(params.get(i)).type;
+                if (param != Type.OBJECT && param != typeOf.of(expr.arguments.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Type visitGetExpr(Expr.Get expr) {
+            throw new Unsupported("A property");
+        }
+
+        @Override
+        public Type visitGroupingExpr(Expr.Grouping expr) {
+            return compile(expr.expression);
+        }
+
+        @Override
+        public Type visitLiteralExpr(Expr.Literal expr) {
+            Object value = expr.value;
+            if (value instanceof Double) {
+                double number = (double) value;
+                if (Double.doubleToRawLongBits(number) == 0L) {
+                    code.op(DCONST_0, 2);
+                } else if (number == 1.0) {
+                    code.op(DCONST_1, 2);
+                } else {
+                    code.op(LDC2_W, 2);
+                    code.u2(writer.doubleConstant(number));
+                }
+                return Type.NUMBER;
+            } else if (value instanceof Boolean) {
+                code.op((boolean) value ? ICONST_1 : ICONST_0, 1);
+                return Type.BOOLEAN;
+            } else if (value instanceof String) {
+                code.op(LDC_W, 1);
+                code.u2(writer.string((String) value));
+                return Type.OBJECT;
+            } else if (value == null) {
+                code.op(ACONST_NULL, 1);
+                return Type.OBJECT;
+            }
+            throw new Unsupported("The literal " + value);
+        }
+
+        @Override
+        public Type visitLogicalExpr(Expr.Logical expr) {
+            int jumpIfDone = expr.operator.type == TokenType.OR ? IFNE : IFEQ;
+            Label end = code.newLabel();
+            if (typeOf.of(expr.left) == Type.BOOLEAN && typeOf.of(expr.right) == Type.BOOLEAN) {
+                compile(expr.left);
+                code.op(DUP, 1);
+                code.jump(jumpIfDone, end, -1);
+                code.op(POP, -1);
+                compile(expr.right);
+                code.mark(end);
+                return Type.BOOLEAN;
+            }
+
+            boxed(expr.left);
+            code.op(DUP, 1);
+            code.invoke(INVOKESTATIC, INTERPRETER, "isTruthy", "(Ljava/lang/Object;)Z");
+            code.jump(jumpIfDone, end, -1);
+            code.op(POP, -1);
+            boxed(expr.right);
+            code.mark(end);
+            return Type.OBJECT;
+        }
+
+        @Override
+        public Type visitSetExpr(Expr.Set expr) {
+            throw new Unsupported("A property");
+        }
+
+        @Override
+        public Type visitThisExpr(Expr.This expr) {
+            throw new Unsupported("this");
+        }
+
+        @Override
+        public Type visitUnaryExpr(Expr.Unary expr) {
+            switch (expr.operator.type) {
+                case MINUS:
+                    Type type = compile(expr.right);
+                    if (type == Type.NUMBER) {
+                        code.op(DNEG, 0);
+                    } else {
+                        box(type);
+                        pushToken(expr.operator);
+                        invokeRuntime("negate", "(Ljava/lang/Object;L" + TOKEN + ";)D");
+                    }
+                    return Type.NUMBER;
+                case BANG:
+                    condition(expr.right);
+                    return not();
+                default:
+                    throw new Unsupported("The operator " + expr.operator.lexeme);
+            }
+        }
+
+        @Override
+        public Type visitVariableExpr(Expr.Variable expr) {
+            if (expr.depth < 0) {
+                pushConstant(interpreter.globals, ENVIRONMENT);
+                pushToken(expr.name);
+                code.invoke(INVOKEVIRTUAL, ENVIRONMENT, "get", "(L" + TOKEN + ";)Ljava/lang/Object;");
+                return Type.OBJECT;
+            }
+
+            Local local = resolve(expr.depth, expr.slot);
+            load(local);
+            return local.type;
+        }
+    }
+
+    /**
+     * Type an expression compiles to, without compiling it.
+     */
+    private class TypeOf implements Expr.Visitor<Type> {
+
+        Type of(Expr expression) {
+            return expression.accept(this);
+        }
+
+        @Override
+        public Type visitAssignExpr(Expr.Assign expr) {
+            return expr.depth < 0 ? Type.OBJECT : resolve(expr.depth, expr.slot).type;
+        }
+
+        @Override
+        public Type visitBinaryExpr(Expr.Binary expr) {
+            switch (expr.operator.type) {
+                case PLUS:
+                    return of(expr.left) == Type.NUMBER && of(expr.right) == Type.NUMBER ? Type.NUMBER : Type.OBJECT;
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    return Type.NUMBER;
+                default:
+                    return Type.BOOLEAN;
+            }
+        }
+
+        @Override
+        public Type visitCallExpr(Expr.Call expr) {
+            return Type.OBJECT;
+        }
+
+        @Override
+        public Type visitGetExpr(Expr.Get expr) {
+            return Type.OBJECT;
+        }
+
+        @Override
+        public Type visitGroupingExpr(Expr.Grouping expr) {
+            return of(expr.expression);
+        }
+
+        @Override
+        public Type visitLiteralExpr(Expr.Literal expr) {
+            if (expr.value instanceof Double) {
+                return Type.NUMBER;
+            } else if (expr.value instanceof Boolean) {
+                return Type.BOOLEAN;
+            }
+            return Type.OBJECT;
+        }
+
+        @Override
+        public Type visitLogicalExpr(Expr.Logical expr) {
+            return of(expr.left) == Type.BOOLEAN && of(expr.right) == Type.BOOLEAN ? Type.BOOLEAN : Type.OBJECT;
+        }
+
+        @Override
+        public Type visitSetExpr(Expr.Set expr) {
+            return Type.OBJECT;
+        }
+
+        @Override
+        public Type visitThisExpr(Expr.This expr) {
+            return Type.OBJECT;
+        }
+
+        @Override
+        public Type visitUnaryExpr(Expr.Unary expr) {
+            return expr.operator.type == TokenType.MINUS ? Type.NUMBER : Type.BOOLEAN;
+        }
+
+        @Override
+        public Type visitVariableExpr(Expr.Variable expr) {
+            return expr.depth < 0 ? Type.OBJECT : resolve(expr.depth, expr.slot).type;
+        }
+    }
+}
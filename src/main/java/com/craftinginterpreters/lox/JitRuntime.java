@@ -0,0 +1,88 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.Interpreter.InterpreterError;
+
+/**
+ * Operations called by the classes of the {@link JitCompiler}, for operands
+ * whose type is not known when compiling. Checks and error messages are the
+ * ones of the {@link Interpreter}.
+ */
+final class JitRuntime {
+
+    private JitRuntime() {
+    }
+
+    static Object add(Object left, Object right, Token operator) {
+        if (left instanceof Double && right instanceof Double) {
+            return (double) left + (double) right;
+        } else if (left instanceof String && right instanceof String) {
+            return (String) left + (String) right;
+        }
+        throw Interpreter.error(operator, "operands must be either both numbers or both Strings");
+    }
+
+    static double subtract(Object left, Object right, Token operator) {
+        return Numbers.check(operator, left) - Numbers.check(operator, right);
+    }
+
+    static double multiply(Object left, Object right, Token operator) {
+        return Numbers.check(operator, left) * Numbers.check(operator, right);
+    }
+
+    static double divide(Object left, Object right, Token operator) {
+        return divide(Numbers.check(operator, left), Numbers.check(operator, right), operator);
+    }
+
+    static double divide(double left, double right, Token operator) {
+        if (right == 0) {
+            throw Interpreter.error(operator, "Division by 0");
+        }
+        return left / right;
+    }
+
+    static double negate(Object operand, Token operator) {
+        return -Numbers.check(operator, operand);
+    }
+
+    static boolean greater(Object left, Object right, Token operator) {
+        return Numbers.check(operator, left) > Numbers.check(operator, right);
+    }
+
+    static boolean greaterEqual(Object left, Object right, Token operator) {
+        return Numbers.check(operator, left) >= Numbers.check(operator, right);
+    }
+
+    static boolean less(Object left, Object right, Token operator) {
+        return Numbers.check(operator, left) < Numbers.check(operator, right);
+    }
+
+    static boolean lessEqual(Object left, Object right, Token operator) {
+        return Numbers.check(operator, left) <= Numbers.check(operator, right);
+    }
+
+    /**
+     * Same as {@link Interpreter#isEqual} on the boxed numbers.
+     */
+    static boolean isEqual(double left, double right) {
+        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+    }
+
+    static void print(Object value, Interpreter interpreter) {
+        interpreter.print(value);
+    }
+
+    static LoxCallable callable(Object callee, Token paren) {
+        if (!(callee instanceof LoxCallable)) {
+            throw new InterpreterError(paren, "Can only call functions and classes.");
+        }
+        return (LoxCallable) callee;
+    }
+
+    static Object call(LoxCallable function, Object[] arguments, Token paren, Interpreter interpreter) {
+        if (arguments.length != function.arity()) {
+            throw new InterpreterError(paren,
+                "Expected " + function.arity() + " arguments, got " + arguments.length + ".");
+        }
+        return function.call(interpreter, arguments);
+    }
+}
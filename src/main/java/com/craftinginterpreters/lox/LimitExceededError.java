@@ -0,0 +1,16 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * A script ran over a limit of its {@link Budget}.
+ */
+public class LimitExceededError extends RuntimeException {
+
+    LimitExceededError(String message) {
+        super(message);
+    }
+
+    @Override
+    public String toString() {
+        return "<LimitExceededError reason='" + this.getLocalizedMessage() + "'>";
+    }
+}
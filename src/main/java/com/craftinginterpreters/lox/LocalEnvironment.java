@@ -0,0 +1,149 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * Environment for a local scope. Variables are addressed by the slot the
+ * {@link Resolver} assigned to them, so lookups are plain array accesses.
+ * Globals stay in the name-keyed {@link Environment}.
+ *
+ * Variables that closures capture and that change afterwards live in a
+ * {@link Cell}, which the accessors look through, so the scope and the
+ * closures share them.
+ */
+public class LocalEnvironment {
+    private static final Object[] EMPTY = new Object[0];
+    private static final int MIN_CAPACITY = 4;
+
+    private Object[] slots;
+    private int count = 0;
+    private final LocalEnvironment enclosing;
+
+    /**
+     * @param enclosing the surrounding local scope, or null at top-level
+     */
+    public LocalEnvironment(LocalEnvironment enclosing) {
+        this(enclosing, 0);
+    }
+
+    /**
+     * @param enclosing the surrounding local scope, or null at top-level
+     * @param capacity expected number of variables in this scope
+     */
+    public LocalEnvironment(LocalEnvironment enclosing, int capacity) {
+        this.enclosing = enclosing;
+        this.slots = capacity == 0 ? EMPTY : new Object[capacity];
+    }
+
+    /**
+     * Takes over an array that already holds the first variables, like the
+     * arguments of a call.
+     *
+     * @param enclosing the surrounding local scope, or null at top-level
+     * @param slots the variables, and room for more
+     * @param count number of variables already in slots
+     */
+    public LocalEnvironment(LocalEnvironment enclosing, Object[] slots, int count) {
+        this.enclosing = enclosing;
+        this.slots = slots;
+        this.count = count;
+    }
+
+    /**
+     * Defines the next variable of this scope. Declarations are executed in
+     * the same order the resolver assigned their slots.
+     */
+    void define(Object value) {
+        if (count == slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(MIN_CAPACITY, count * 2));
+        }
+        slots[count++] = value;
+    }
+
+    /**
+     * Defines the next variable in a cell. Functions and classes that capture
+     * themselves define it empty and {@link #initialize} it once they exist.
+     */
+    void defineCell(Object value) {
+        define(new Cell(value));
+    }
+
+    /**
+     * Gives the cell defined last its value.
+     */
+    void initialize(Object value) {
+        ((Cell) slots[count - 1]).value = value;
+    }
+
+    /**
+     * Captures variables of a scope and the ones around it into a new scope
+     * without enclosing one. Cells are shared, the other variables get
+     * copied.
+     *
+     * @param environment the scope a function or class is created in
+     * @param captures depth and slot of each variable, one pair after another
+     * @return the captured variables, or null if there are none
+     */
+    static LocalEnvironment capture(LocalEnvironment environment, int[] captures) {
+        if (captures == null) {
+            return null;
+        }
+        Object[] captured = new Object[captures.length / 2];
+        for (int i = 0; i < captured.length; i++) {
+            captured[i] = environment.ancestor(captures[2 * i]).slots[captures[2 * i + 1]];
+        }
+        return new LocalEnvironment(null, captured, captured.length);
+    }
+
+    /**
+     * Puts the variables of the slots into cells, like parameters that
+     * closures capture and that get assigned.
+     */
+    void wrap(int[] cells) {
+        if (cells == null) {
+            return;
+        }
+        for (int slot : cells) {
+            slots[slot] = new Cell(slots[slot]);
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    LocalEnvironment enclosing() {
+        return enclosing;
+    }
+
+    private LocalEnvironment ancestor(int distance) {
+        LocalEnvironment environment = this;
+        for (int i = 0; i < distance; i++) {
+            environment = environment.enclosing;
+        }
+        return environment;
+    }
+
+    Object get(int slot) {
+        Object value = slots[slot];
+        return value instanceof Cell ? ((Cell) value).value : value;
+    }
+
+    void assign(int slot, Object value) {
+        Object current = slots[slot];
+        if (current instanceof Cell) {
+            ((Cell) current).value = value;
+        } else {
+            slots[slot] = value;
+        }
+    }
+
+    Object getAt(int distance, int slot) {
+        Object value = ancestor(distance).slots[slot];
+        return value instanceof Cell ? ((Cell) value).value : value;
+    }
+
+    void assignAt(int distance, int slot, Object value) {
+        ancestor(distance).assign(slot, value);
+    }
+}
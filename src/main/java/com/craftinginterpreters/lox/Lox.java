@@ -6,18 +6,52 @@ import static com.craftinginterpreters.lox.ExitCode.SCANNER_ERROR;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.io.PrintStream;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
- * Lox main class.
+ * Lox main class. Besides the command line it is the way to embed Lox: every
+ * instance has an interpreter of its own, so instances can run scripts on
+ * different threads at the same time.
  */
 public final class Lox {
 
-  private static boolean hadError;
-  private static Interpreter interpreter = new Interpreter();
+  private final Engine engine;
+  private final Interpreter interpreter;
+  // null compiles every script anew
+  private final ScriptCache cache;
+
+  /**
+   * A Lox printing to System.out and System.err, running the tree-walker.
+   */
+  public Lox() {
+    this(Engine.TREE, null, null);
+  }
+
+  /**
+   * @param engine executes the scripts
+   * @param out stream for print statements, null for System.out
+   * @param err stream for errors, null for System.err
+   */
+  public Lox(Engine engine, PrintStream out, PrintStream err) {
+    this(engine, out, err, null);
+  }
+
+  /**
+   * @param engine executes the scripts
+   * @param out stream for print statements, null for System.out
+   * @param err stream for errors, null for System.err
+   * @param cache compiled scripts to reuse, null to compile every script
+   */
+  public Lox(Engine engine, PrintStream out, PrintStream err, ScriptCache cache) {
+    this.engine = engine;
+    this.interpreter = new Interpreter(out, err);
+    this.cache = cache;
+  }
 
   /**
    * Says hello to the world.
@@ -26,19 +60,38 @@ public final class Lox {
    * @throws IOException
    */
   public static void main(final String[] args) throws IOException {
-    if (args.length > 1) {
-      System.out.println("Usage: jlox [script]");
-      System.exit(NORMAL.getCode());
+    Engine engine = Engine.TREE;
+    ScriptCache cache = null;
+    List<String> scripts = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--engine=")) {
+        engine = Engine.byName(arg.substring("--engine=".length()));
+        if (engine == null) {
+          usage();
+        }
+      } else if (arg.startsWith("--cache=")) {
+        cache = new ScriptCache(1, Paths.get(arg.substring("--cache=".length())));
+      } else if (arg.startsWith("--")) {
+        usage();
+      } else {
+        scripts.add(arg);
+      }
     }
-    
-    if (args.length == 1) {
-      runFile(args[0]);
+
+    Lox lox = new Lox(engine, null, null, cache);
+    if (scripts.isEmpty()) {
+      lox.runPrompt();
     } else {
-      runPrompt();
+      lox.runFiles(scripts);
     }
   }
 
-  private static void runPrompt() throws IOException {
+  private static void usage() {
+    System.out.println("Usage: jlox [--engine=tree|closure|vm] [--cache=dir] [script...]");
+    System.exit(NORMAL.getCode());
+  }
+
+  private void runPrompt() throws IOException {
     InputStreamReader input = new InputStreamReader(System.in);
     BufferedReader reader = new BufferedReader(input);
 
@@ -51,51 +104,160 @@ public final class Lox {
       run(line);
 
       // reset, to not kill the entire experience
-      hadError = false;
+      interpreter.reporter.reset();
     }
   }
 
-  private static void runFile(final String path) throws IOException {
-    byte[] bytes = Files.readAllBytes(Paths.get(path));
-    run(new String(bytes, Charset.defaultCharset()));
+  /**
+   * Runs the scripts as one program, see {@link #run(List)}.
+   */
+  private void runFiles(final List<String> paths) throws IOException {
+    if (paths.size() == 1) {
+      run(SourceFile.open(Paths.get(paths.get(0))));
+    } else {
+      List<CharSequence> sources = new ArrayList<>();
+      for (String path : paths) {
+        sources.add(SourceFile.open(Paths.get(path)));
+      }
+      run(sources);
+    }
 
-    if (hadError) {
+    if (hadError()) {
       System.exit(SCANNER_ERROR.getCode());
     }
   }
 
-  private static void run(final String source) {
-    final Scanner scanner = new Scanner(source);
-    List<Token> tokens = scanner.scanTokens();
+  /**
+   * Runs a script, with the globals of the scripts run before.
+   *
+   * @return false if there was an error
+   */
+  public boolean run(final CharSequence source) {
+    CompiledScript script = compile(source);
+    if (script != null) {
+      execute(script);
+    }
+    return !hadError();
+  }
 
-    Parser parser = new Parser(tokens);
-    List<Stmt> statements = parser.parse();
+  /**
+   * Runs several sources as one script, in the given order, so later ones
+   * see the globals of earlier ones. The sources are scanned and parsed side
+   * by side on the common {@link ForkJoinPool}, then resolved and executed
+   * together. The result is not cached.
+   *
+   * @return false if there was an error
+   */
+  public boolean run(final List<? extends CharSequence> sources) {
+    List<ErrorReporter> reporters = new ArrayList<>();
+    List<ForkJoinTask<List<Stmt>>> tasks = new ArrayList<>();
+    for (CharSequence source : sources) {
+      // errors get reported in the order of the sources
+      ErrorReporter reporter = ErrorReporter.keeping();
+      reporters.add(reporter);
+      tasks.add(ForkJoinTask.adapt(() -> parse(source, reporter)).fork());
+    }
 
-    if (hadError)
-      return;
+    List<Stmt> statements = new ArrayList<>();
+    for (int i = 0; i < tasks.size(); i++) {
+      statements.addAll(tasks.get(i).join());
+      reporters.get(i).reportTo(interpreter.reporter);
+    }
 
+    if (!hadError()) {
+      CompiledScript script = resolve(statements);
+      if (script != null) {
+        execute(script);
+      }
+    }
+    return !hadError();
+  }
+
+  /**
+   * Scans, parses and resolves a script, or takes it from the cache. The
+   * compiled script only depends on the source and can be executed by other
+   * instances as well.
+   *
+   * @return the script, or null if there was an error
+   */
+  CompiledScript compile(final CharSequence source) {
+    if (cache == null) {
+      return parse(source);
+    }
+
+    String hash = ScriptCache.hash(source);
+    CompiledScript script = cache.get(hash);
+    if (script != null && script.canRunWith(interpreter.globals)) {
+      return script;
+    }
+
+    script = parse(source);
+    if (script != null) {
+      cache.put(hash, script);
+    }
+    return script;
+  }
+
+  private CompiledScript parse(final CharSequence source) {
+    List<Stmt> statements = parse(source, interpreter.reporter);
+
+    if (hadError())
+      return null;
+
+    return resolve(statements);
+  }
+
+  private static List<Stmt> parse(final CharSequence source, ErrorReporter reporter) {
+    final Scanner scanner = new Scanner(source, reporter);
+    Parser parser = new Parser(scanner, reporter);
+    return parser.parse();
+  }
+
+  private CompiledScript resolve(List<Stmt> statements) {
     Resolver resolver = new Resolver(interpreter);
     resolver.resolve(statements);
 
-    if (hadError) return;
+    if (hadError()) return null;
+
+    List<Stmt> optimized = new Optimizer(resolver).optimize(statements);
+    return new CompiledScript(optimized, resolver.usedGlobals());
+  }
 
-    interpreter.interpret(statements);
+  /**
+   * Limits the scripts run from now on.
+   */
+  void limit(Budget budget) {
+    interpreter.budget = budget;
   }
 
-  static void error(final int line, final String message) {
-    report(line, "", message);
+  void execute(CompiledScript script) {
+    List<Stmt> statements = script.statements;
+    switch (engine) {
+      case CLOSURE:
+        new ClosureCompiler(interpreter).interpret(statements);
+        break;
+      case VM:
+        new VirtualMachine(interpreter).interpret(statements);
+        break;
+      case TREE:
+      default:
+        interpreter.interpret(statements);
+        break;
+    }
   }
 
-  private static void report(final int line, final String where, final String message) {
-    System.err.println("[line " + line + "] Error " + where + ": " + message);
-    hadError = true;
+  /**
+   * Reports an error that ended the run of a script, like a
+   * {@link RuntimeError} the engines let through.
+   */
+  void report(RuntimeException error) {
+    interpreter.reporter.error(0, error.getLocalizedMessage());
   }
 
-  public static void error(Token token, String message) {
-    if (token.type == TokenType.EOF) {
-      report(token.line, " at end", message);
-    } else {
-      report(token.line, " at '" + token.lexeme + "'", message);
-    }
+  /**
+   * @return whether any script run so far had an error
+   */
+  public boolean hadError() {
+    return interpreter.reporter.hadError();
   }
 }
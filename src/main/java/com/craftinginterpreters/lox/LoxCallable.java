@@ -1,8 +1,19 @@
 package com.craftinginterpreters.lox;
 
-import java.util.List;
-
 interface LoxCallable {
-    Integer arity();
-    Object call(Interpreter interpreter, List<Object> arguments);
+    int arity();
+
+    /**
+     * @param arguments holds the arguments in its first {@link #arity()}
+     *        elements; the callee may keep it to store its own variables
+     */
+    Object call(Interpreter interpreter, Object[] arguments);
+
+    /**
+     * @return the length of the arguments array that leaves room for all
+     *         variables of the callee
+     */
+    default int frameSize() {
+        return arity();
+    }
 }
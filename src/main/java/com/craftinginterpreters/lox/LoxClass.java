@@ -1,20 +1,25 @@
 package com.craftinginterpreters.lox;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class LoxClass extends LoxInstance implements LoxCallable {
 
-    final static LoxClass BaseObject = new LoxClass("Object", new HashMap<>(), new HashMap<>());
+    final static LoxClass BaseObject = new LoxClass("Object", new HashMap<>(), new HashMap<>(), Shape.empty());
 
     private final String name;
-    private LoxInstance instance;
     private final Map<String, LoxFunction> methods;
     private final Map<String, LoxFunction> classMethods;
+    private final Shape emptyShape;
 
-    public LoxClass(String name, Map<String, LoxFunction> methods, Map<String, LoxFunction> classMethods) {
-        super(BaseObject);
+    /**
+     * @param emptyShape the shape the class and its instances start with, see
+     *        {@link Interpreter#emptyShape}
+     */
+    public LoxClass(String name, Map<String, LoxFunction> methods, Map<String, LoxFunction> classMethods,
+            Shape emptyShape) {
+        super(BaseObject, emptyShape);
+        this.emptyShape = emptyShape;
         this.name = name;
         this.methods = methods;
         this.classMethods = classMethods;
@@ -33,7 +38,7 @@ public class LoxClass extends LoxInstance implements LoxCallable {
     }
 
     @Override
-    public Integer arity() {
+    public int arity() {
         LoxFunction initializer = this.findMethod("init");
         if (initializer == null) {
             return 0;
@@ -43,11 +48,21 @@ public class LoxClass extends LoxInstance implements LoxCallable {
     }
 
     @Override
-    public Object call(Interpreter interpreter, List<Object> arguments) {
-        instance = new LoxInstance(this);
+    public int frameSize() {
+        LoxFunction initializer = this.findMethod("init");
+        if (initializer == null) {
+            return 0;
+        }
+
+        return initializer.frameSize();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        LoxInstance instance = new LoxInstance(this, emptyShape);
         LoxFunction initializer = this.findMethod("init");
         if (initializer != null) {
-            initializer.bind(instance).call(interpreter, arguments);
+            instance.invoke(initializer, interpreter, arguments);
         }
         return instance;
     }
@@ -56,13 +71,27 @@ public class LoxClass extends LoxInstance implements LoxCallable {
         final String identifier = name.lexeme;
 
         LoxFunction method = this.findClassMethod(identifier);
-        if (method != null) return method
-            .bind((LoxClass) this, "self")
-            .bind(this, "this");
+        if (method != null) return method.bind(this);
 
         throw new RuntimeError("Undefined property '" + identifier + "'.");
     }
 
+    @Override
+    int fieldIndex(Token name, PropertyCache cache) {
+        // fields of classes are not read, only their class methods
+        return -1;
+    }
+
+    @Override
+    LoxFunction unboundMethod(String identifier) {
+        return this.findClassMethod(identifier);
+    }
+
+    @Override
+    Object invoke(LoxFunction method, Interpreter interpreter, Object[] arguments) {
+        return method.call(interpreter, scopeOfThis(method.closure), arguments);
+    }
+
     public LoxFunction findClassMethod(String identifier) {
         if (classMethods.containsKey(identifier)) {
             return classMethods.get(identifier);
@@ -1,70 +1,101 @@
 package com.craftinginterpreters.lox;
 
-import java.util.List;
-
 import com.craftinginterpreters.lox.Stmt.Function;
 
 public class LoxFunction implements LoxCallable {
 
-    private final Stmt.Function declaration;
-    private final Environment closure;
+    final Stmt.Function declaration;
+    final LocalEnvironment closure;
+
+    final boolean isInitializer;
 
-    private final boolean isInitializer;
+    /** Calls after which the function gets compiled by the {@link JitCompiler}. */
+    static final int JIT_THRESHOLD = 1000;
+    private int invocations = 0;
+    private JitCode compiled;
 
-    LoxFunction(Stmt.Function declaration, Environment closure) {
+    LoxFunction(Stmt.Function declaration, LocalEnvironment closure) {
         this(declaration, closure, false);
     }
 
-    public LoxFunction(Function declaration, Environment closure, boolean isInitializer) {
+    public LoxFunction(Function declaration, LocalEnvironment closure, boolean isInitializer) {
         this.declaration = declaration;
         this.closure = closure;
         this.isInitializer = isInitializer;
     }
 
     @Override
-    public Integer arity() {
+    public int arity() {
         return this.declaration.params.size();
     }
 
     @Override
-    public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment local = new Environment(closure);
-        for (int i = 0; i < arity(); i++) {
-            local.define(
-                declaration.params.get(i).lexeme, 
-                arguments.get(i)
-            );
+    public int frameSize() {
+        return Math.max(arity(), declaration.slots);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        return call(interpreter, closure, arguments);
+    }
+
+    /**
+     * Runs the function in another scope than its own closure, which lets
+     * methods run on a receiver without binding them first.
+     *
+     * @param closure {@link #closure}, or the scope of {@code this} within it
+     */
+    Object call(Interpreter interpreter, LocalEnvironment closure, Object[] arguments) {
+        // compiled code does not check the budget
+        if (compiled == null && interpreter.budget == null && ++invocations == JIT_THRESHOLD) {
+            compiled = JitCompiler.compile(this, interpreter);
+        }
+        if (compiled != null) {
+            Object result = compiled.invoke(arguments);
+            if (result != JitCode.FALLBACK) {
+                return result;
+            }
         }
 
+        LocalEnvironment local = frame(closure, arguments);
+
         try {
             interpreter.executeBlock(declaration.body, local);
         } catch (Return result) {
             if (isInitializer) {
-                return closure.getAt(0, "this");
+                return closure.getAt(0, 0);
             }
             return result.value;
         }
 
-        if (isInitializer) return closure.getAt(0, "this");
+        if (isInitializer) return closure.getAt(0, 0);
 
         return null;
     }
 
+    /**
+     * @return the scope of a call, which starts with the arguments, in cells
+     *         for the parameters that closures capture and that get assigned
+     */
+    LocalEnvironment frame(LocalEnvironment closure, Object[] arguments) {
+        LocalEnvironment local = new LocalEnvironment(closure, arguments, arity());
+        local.wrap(declaration.cells);
+        return local;
+    }
+
     @Override
     public String toString() {
         return "<fn " + declaration.name.lexeme + ">";
     }
 
     public LoxFunction bind(LoxInstance loxInstance) {
-        return bind(loxInstance, "this");
+        return withClosure(loxInstance.scopeOfThis(closure));
     }
 
-    public LoxFunction bind(LoxInstance loxInstance, String target) {
-        Environment classClosure = new Environment(closure);
-        classClosure.define(target, loxInstance);
+    LoxFunction withClosure(LocalEnvironment closure) {
         return new LoxFunction(
             declaration, 
-            classClosure, 
+            closure, 
             isInitializer
         );
     }
@@ -1,21 +1,32 @@
 package com.craftinginterpreters.lox;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class LoxInstance {
 
+    private static final Object[] EMPTY = new Object[0];
+    private static final int MIN_CAPACITY = 4;
+
     private final LoxClass klass;
-    private final Map<String, Object> fields = new HashMap<>();
+    // where the fields are in values
+    private Shape shape;
+    private Object[] values = EMPTY;
+    // scope holding "this" for the methods, made on their first call
+    private LocalEnvironment scopeOfThis;
 
-    public LoxInstance(LoxClass loxClass) {
+    /**
+     * @param emptyShape the shape the instance starts with, without fields
+     */
+    public LoxInstance(LoxClass loxClass, Shape emptyShape) {
         this.klass = loxClass;
+        this.shape = emptyShape;
     }
 
     Object get(Token name) {
         final String identifier = name.lexeme;
-        if (fields.containsKey(identifier)) {
-            return fields.get(identifier);
+        int index = shape.indexOf(identifier);
+        if (index >= 0) {
+            return values[index];
         }
 
         LoxFunction method = klass.findMethod(identifier);
@@ -27,12 +38,101 @@ public class LoxInstance {
         throw new RuntimeError("Undefined property '" + identifier + "'.");
     }
 
+    /**
+     * Reads a property for the {@code .} operator, which calls methods and
+     * functions without parameters like getters.
+     *
+     * @param cache of the {@code .} operator
+     */
+    Object read(Token name, PropertyCache cache, Interpreter interpreter) {
+        int index = fieldIndex(name, cache);
+        if (index < 0) {
+            LoxFunction method = unboundMethod(name.lexeme);
+            if (method != null && method.arity() == 0) {
+                return invoke(method, interpreter, new Object[method.frameSize()]);
+            }
+        }
+
+        Object result = index < 0 ? get(name) : values[index];
+        if (result instanceof LoxFunction && ((LoxFunction) result).arity() == 0) {
+            LoxFunction getter = (LoxFunction) result;
+            return getter.call(interpreter, new Object[getter.frameSize()]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the index of the field in values, or -1 if there is none
+     */
+    int fieldIndex(Token name, PropertyCache cache) {
+        PropertyCache.Entry entry = cache.find(shape);
+        if (entry == null) {
+            entry = cache.read(shape, name.lexeme);
+        }
+        return entry.index;
+    }
+
+    /**
+     * @return the method {@link #get} would bind for the property, or null
+     *         if the property is a field or undefined
+     */
+    LoxFunction lookupMethod(Token name, PropertyCache cache) {
+        if (fieldIndex(name, cache) >= 0) {
+            return null;
+        }
+        return unboundMethod(name.lexeme);
+    }
+
+    /**
+     * @return the method {@link #get} binds for the identifier, without
+     *         looking at the fields
+     */
+    LoxFunction unboundMethod(String identifier) {
+        LoxFunction method = klass.findMethod(identifier);
+        return method != null ? method : klass.findClassMethod(identifier);
+    }
+
+    /**
+     * Calls a method of {@link #lookupMethod} the way a call of the bound
+     * method would, without binding it first.
+     */
+    Object invoke(LoxFunction method, Interpreter interpreter, Object[] arguments) {
+        LoxInstance receiver = klass.findMethod(method.declaration.name.lexeme) == method ? this : klass;
+        return method.call(interpreter, receiver.scopeOfThis(method.closure), arguments);
+    }
+
+    /**
+     * @param closure the scope the methods were declared in
+     * @return the scope that holds this instance as {@code this} within it
+     */
+    LocalEnvironment scopeOfThis(LocalEnvironment closure) {
+        if (scopeOfThis == null || scopeOfThis.enclosing() != closure) {
+            // "this" is the only variable of the class scope, see Resolver.visitClassStmt
+            scopeOfThis = new LocalEnvironment(closure, new Object[] {this}, 1);
+        }
+        return scopeOfThis;
+    }
+
     @Override
     public String toString() {
         return "<LoxInstance [klass=" + klass.getName() + "]>";
     }
 
-    public void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+    /**
+     * @param cache of the assignment to the property
+     */
+    public void set(Token name, PropertyCache cache, Object value) {
+        PropertyCache.Entry entry = cache.find(shape);
+        if (entry == null) {
+            entry = cache.write(shape, name.lexeme);
+        }
+
+        if (entry.next != shape) {
+            shape = entry.next;
+            if (entry.index == values.length) {
+                values = Arrays.copyOf(values, Math.max(MIN_CAPACITY, values.length * 2));
+            }
+        }
+        values[entry.index] = value;
     }
 }
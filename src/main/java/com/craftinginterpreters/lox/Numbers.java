@@ -0,0 +1,100 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Arithmetic on Lox numbers, which live boxed as {@link Double}s.
+ */
+final class Numbers {
+
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final Double[] CACHE = new Double[CACHE_HIGH - CACHE_LOW];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = (double) (i + CACHE_LOW);
+        }
+    }
+
+    private Numbers() {
+    }
+
+    /**
+     * Boxes a result. Small integers, like loop counters, come from a cache
+     * instead of turning into garbage on every step.
+     */
+    static Double box(double value) {
+        int integer = (int) value;
+        if (integer == value && integer >= CACHE_LOW && integer < CACHE_HIGH
+            && (integer != 0 || Double.doubleToRawLongBits(value) == 0L)) {
+            return CACHE[integer - CACHE_LOW];
+        }
+        return value;
+    }
+
+    /**
+     * @return the operand as number
+     * @throws Interpreter.InterpreterError if it is no number
+     */
+    static double check(Token operator, Object operand) {
+        if (operand instanceof Double) {
+            return (double) operand;
+        }
+        throw Interpreter.error(operator, "Operand must be a number");
+    }
+
+    /**
+     * @return the expression as {@code -}, {@code *} or {@code /}, which
+     *         always result in a number, or null if it is something else
+     */
+    static Expr.Binary arithmetic(Expr expression) {
+        while (expression instanceof Expr.Grouping) {
+            expression = ((Expr.Grouping) expression).expression;
+        }
+        if (!(expression instanceof Expr.Binary)) {
+            return null;
+        }
+
+        Expr.Binary binary = (Expr.Binary) expression;
+        switch (binary.operator.type) {
+            case MINUS:
+            case STAR:
+            case SLASH:
+                return binary;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Applies {@code >}, {@code >=}, {@code <} or {@code <=}.
+     */
+    static boolean compare(Token operator, double left, double right) {
+        switch (operator.type) {
+            case GREATER:
+                return left > right;
+            case GREATER_EQUAL:
+                return left >= right;
+            case LESS:
+                return left < right;
+            default:
+                return left <= right;
+        }
+    }
+
+    /**
+     * Applies {@code -}, {@code *} or {@code /}.
+     */
+    static double calculate(Token operator, double left, double right) {
+        switch (operator.type) {
+            case MINUS:
+                return left - right;
+            case STAR:
+                return left * right;
+            default:
+                if (right == 0) {
+                    throw Interpreter.error(operator, "Division by 0");
+                }
+                return left / right;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Instructions of the {@link VirtualMachine}. Operands follow the opcode in
+ * the code array, their count is noted next to each instruction.
+ */
+final class OpCode {
+
+    /** 1: constant index. Pushes the constant. */
+    static final int CONSTANT = 0;
+    static final int NIL = 1;
+    static final int TRUE = 2;
+    static final int FALSE = 3;
+    static final int POP = 4;
+
+    /** 1: constant index of the name token. */
+    static final int GET_GLOBAL = 5;
+    /** 1: constant index of the name token. Defines a global that has a value. */
+    static final int DEFINE_GLOBAL = 6;
+    /** 1: constant index of the name token. Defines a global without value. */
+    static final int DECLARE_GLOBAL = 7;
+    /** 1: constant index of the name token. */
+    static final int SET_GLOBAL = 8;
+    /** 2: depth, slot. */
+    static final int GET_LOCAL = 9;
+    /** 2: depth, slot. */
+    static final int SET_LOCAL = 10;
+    /** Moves the top of the stack into the next slot of the current scope. */
+    static final int DEFINE_LOCAL = 11;
+    static final int PUSH_SCOPE = 12;
+    static final int POP_SCOPE = 13;
+
+    /** 1: constant index of the {@link Expr.Get}, for its name and cache. */
+    static final int GET_PROPERTY = 14;
+    /** 1: constant index of the {@link Expr.Set}, for its name and cache. */
+    static final int SET_PROPERTY = 15;
+
+    static final int EQUAL = 16;
+    static final int NOT_EQUAL = 17;
+    /** Arithmetic and comparison. 1: constant index of the operator token. */
+    static final int GREATER = 18;
+    static final int GREATER_EQUAL = 19;
+    static final int LESS = 20;
+    static final int LESS_EQUAL = 21;
+    static final int ADD = 22;
+    static final int SUBTRACT = 23;
+    static final int MULTIPLY = 24;
+    static final int DIVIDE = 25;
+    static final int NOT = 26;
+    /** 1: constant index of the operator token. */
+    static final int NEGATE = 27;
+
+    static final int PRINT = 28;
+    /** 1: target offset. */
+    static final int JUMP = 29;
+    /** 1: target offset. Leaves the condition on the stack. */
+    static final int JUMP_IF_FALSE = 30;
+    /** 1: target offset. Leaves the condition on the stack. */
+    static final int JUMP_IF_TRUE = 31;
+
+    /** 2: argument count, constant index of the paren token. */
+    static final int CALL = 32;
+    /** 1: constant index of the function's chunk. */
+    static final int CLOSURE = 33;
+    /**
+     * 3 + n: constant index of the class statement, number of methods, number
+     * of class methods, followed by the constant index of each method chunk.
+     */
+    static final int CLASS = 34;
+    static final int RETURN = 35;
+
+    /** A break that the tree-walker rejects at runtime. */
+    static final int BREAK_ERROR = 36;
+    /** A break outside of any loop or block. */
+    static final int BREAK = 37;
+    /** 1: target offset. The jump back to the start of a loop. */
+    static final int LOOP = 38;
+    /** Defines the next slot of the current scope as an empty cell. */
+    static final int DEFINE_CELL = 39;
+    /** Moves the top of the stack into the cell defined last. */
+    static final int INITIALIZE_CELL = 40;
+
+    private static final String[] NAMES = {
+        "CONSTANT", "NIL", "TRUE", "FALSE", "POP",
+        "GET_GLOBAL", "DEFINE_GLOBAL", "DECLARE_GLOBAL", "SET_GLOBAL",
+        "GET_LOCAL", "SET_LOCAL", "DEFINE_LOCAL", "PUSH_SCOPE", "POP_SCOPE",
+        "GET_PROPERTY", "SET_PROPERTY",
+        "EQUAL", "NOT_EQUAL", "GREATER", "GREATER_EQUAL", "LESS", "LESS_EQUAL",
+        "ADD", "SUBTRACT", "MULTIPLY", "DIVIDE", "NOT", "NEGATE",
+        "PRINT", "JUMP", "JUMP_IF_FALSE", "JUMP_IF_TRUE",
+        "CALL", "CLOSURE", "CLASS", "RETURN",
+        "BREAK_ERROR", "BREAK", "LOOP", "DEFINE_CELL", "INITIALIZE_CELL"
+    };
+
+    private OpCode() {
+    }
+
+    static String name(int opCode) {
+        return NAMES[opCode];
+    }
+
+    /**
+     * @return the number of operands following the instruction at offset
+     */
+    static int operands(int[] code, int offset) {
+        switch (code[offset]) {
+            case CONSTANT:
+            case GET_GLOBAL:
+            case DEFINE_GLOBAL:
+            case DECLARE_GLOBAL:
+            case SET_GLOBAL:
+            case GET_PROPERTY:
+            case SET_PROPERTY:
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+            case ADD:
+            case SUBTRACT:
+            case MULTIPLY:
+            case DIVIDE:
+            case NEGATE:
+            case JUMP:
+            case LOOP:
+            case JUMP_IF_FALSE:
+            case JUMP_IF_TRUE:
+            case CLOSURE:
+                return 1;
+            case GET_LOCAL:
+            case SET_LOCAL:
+            case CALL:
+                return 2;
+            case CLASS:
+                return 3 + code[offset + 2] + code[offset + 3];
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.ClosureCompiler.ExprNode;
+
+/**
+ * Nodes of the {@link ClosureCompiler} for the operators, one per operator.
+ */
+final class OperatorNodes {
+
+    private OperatorNodes() {
+    }
+
+    static ExprNode binary(ExprNode left, Token operator, ExprNode right) {
+        switch (operator.type) {
+            case MINUS:
+                return environment -> {
+                    Object a = left.evaluate(environment);
+                    Object b = right.evaluate(environment);
+                    return Numbers.box(Numbers.check(operator, a) - Numbers.check(operator, b));
+                };
+            case PLUS:
+                return environment -> {
+                    Object a = left.evaluate(environment);
+                    Object b = right.evaluate(environment);
+                    if (a instanceof Double && b instanceof Double) {
+                        return Numbers.box((double) a + (double) b);
+                    } else if (a instanceof String && b instanceof String) {
+                        return (String) a + (String) b;
+                    }
+                    throw Interpreter.error(operator, "operands must be either both numbers or both Strings");
+                };
+            case STAR:
+                return environment -> {
+                    Object a = left.evaluate(environment);
+                    Object b = right.evaluate(environment);
+                    return Numbers.box(Numbers.check(operator, a) * Numbers.check(operator, b));
+                };
+            case SLASH:
+                return environment -> {
+                    Object a = left.evaluate(environment);
+                    Object b = right.evaluate(environment);
+                    double dividend = Numbers.check(operator, a);
+                    double divisor = Numbers.check(operator, b);
+                    return Numbers.box(Numbers.calculate(operator, dividend, divisor));
+                };
+            case GREATER:
+                return environment -> {
+                    Object a = left.evaluate(environment);
+                    Object b = right.evaluate(environment);
+                    return Numbers.check(operator, a) > Numbers.check(operator, b);
+                };
+            case GREATER_EQUAL:
+                return environment -> {
+                    Object a = left.evaluate(environment);
+                    Object b = right.evaluate(environment);
+                    return Numbers.check(operator, a) >= Numbers.check(operator, b);
+                };
+            case LESS:
+                return environment -> {
+                    Object a = left.evaluate(environment);
+                    Object b = right.evaluate(environment);
+                    return Numbers.check(operator, a) < Numbers.check(operator, b);
+                };
+            case LESS_EQUAL:
+                return environment -> {
+                    Object a = left.evaluate(environment);
+                    Object b = right.evaluate(environment);
+                    return Numbers.check(operator, a) <= Numbers.check(operator, b);
+                };
+            case BANG_EQUAL:
+                return environment -> !Interpreter.isEqual(left.evaluate(environment), right.evaluate(environment));
+            case EQUAL_EQUAL:
+                return environment -> Interpreter.isEqual(left.evaluate(environment), right.evaluate(environment));
+            default:
+                return environment -> {
+                    left.evaluate(environment);
+                    right.evaluate(environment);
+                    return null;
+                };
+        }
+    }
+
+    /**
+     * Nodes for operations on a number literal, like {@code n - 1} or
+     * {@code i < 10}. Returns null if there is no such node.
+     */
+    static ExprNode binaryWithConstant(ExprNode left, Token operator, double constant) {
+        switch (operator.type) {
+            case MINUS:
+                return environment -> Numbers.box(Numbers.check(operator, left.evaluate(environment)) - constant);
+            case PLUS:
+                return environment -> {
+                    Object a = left.evaluate(environment);
+                    if (a instanceof Double) {
+                        return Numbers.box((double) a + constant);
+                    }
+                    throw Interpreter.error(operator, "operands must be either both numbers or both Strings");
+                };
+            case STAR:
+                return environment -> Numbers.box(Numbers.check(operator, left.evaluate(environment)) * constant);
+            case SLASH:
+                if (constant == 0) {
+                    return null;
+                }
+                return environment -> Numbers.box(Numbers.check(operator, left.evaluate(environment)) / constant);
+            case GREATER:
+                return environment -> Numbers.check(operator, left.evaluate(environment)) > constant;
+            case GREATER_EQUAL:
+                return environment -> Numbers.check(operator, left.evaluate(environment)) >= constant;
+            case LESS:
+                return environment -> Numbers.check(operator, left.evaluate(environment)) < constant;
+            case LESS_EQUAL:
+                return environment -> Numbers.check(operator, left.evaluate(environment)) <= constant;
+            default:
+                return null;
+        }
+    }
+
+    static ExprNode logical(ExprNode left, Token operator, ExprNode right) {
+        if (operator.type == TokenType.OR) {
+            return environment -> {
+                Object value = left.evaluate(environment);
+                return Interpreter.isTruthy(value) ? value : right.evaluate(environment);
+            };
+        }
+        return environment -> {
+            Object value = left.evaluate(environment);
+            return !Interpreter.isTruthy(value) ? value : right.evaluate(environment);
+        };
+    }
+
+    static ExprNode unary(Token operator, ExprNode right) {
+        switch (operator.type) {
+            case MINUS:
+                return environment -> Numbers.box(-Numbers.check(operator, right.evaluate(environment)));
+            case BANG:
+                return environment -> !Interpreter.isTruthy(right.evaluate(environment));
+            default:
+                return environment -> {
+                    right.evaluate(environment);
+                    return null;
+                };
+        }
+    }
+}
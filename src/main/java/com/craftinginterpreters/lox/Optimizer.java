@@ -0,0 +1,343 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.craftinginterpreters.lox.Expr.Assign;
+import com.craftinginterpreters.lox.Expr.Binary;
+import com.craftinginterpreters.lox.Expr.Call;
+import com.craftinginterpreters.lox.Expr.Get;
+import com.craftinginterpreters.lox.Expr.Grouping;
+import com.craftinginterpreters.lox.Expr.Literal;
+import com.craftinginterpreters.lox.Expr.Logical;
+import com.craftinginterpreters.lox.Expr.Set;
+import com.craftinginterpreters.lox.Expr.This;
+import com.craftinginterpreters.lox.Expr.Unary;
+import com.craftinginterpreters.lox.Expr.Variable;
+import com.craftinginterpreters.lox.Stmt.Block;
+import com.craftinginterpreters.lox.Stmt.Break;
+import com.craftinginterpreters.lox.Stmt.Class;
+import com.craftinginterpreters.lox.Stmt.Expression;
+import com.craftinginterpreters.lox.Stmt.For;
+import com.craftinginterpreters.lox.Stmt.Function;
+import com.craftinginterpreters.lox.Stmt.If;
+import com.craftinginterpreters.lox.Stmt.Print;
+import com.craftinginterpreters.lox.Stmt.Return;
+import com.craftinginterpreters.lox.Stmt.Var;
+import com.craftinginterpreters.lox.Stmt.While;
+
+/**
+ * Simplifies resolved statements before they run: operators on literals
+ * become literals, groupings disappear, and reads of local variables that
+ * are initialized with a literal and never assigned become that literal.
+ *
+ * Nodes that do not change are kept, so are the variable slots the
+ * {@link Resolver} handed out. Operations that would fail, like {@code 1 / 0}
+ * or {@code -"a"}, are left for the engines to report when they run.
+ */
+final class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+    private final Resolver resolver;
+    private final Map<Var, Literal> constants = new HashMap<>();
+
+    /**
+     * @param resolver has resolved the statements to optimize
+     */
+    Optimizer(Resolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * @return the optimized statements, the same list if nothing changed
+     */
+    List<Stmt> optimize(List<Stmt> statements) {
+        List<Stmt> optimized = new ArrayList<>(statements.size());
+        boolean changed = false;
+        for (Stmt statement : statements) {
+            Stmt result = optimize(statement);
+            optimized.add(result);
+            changed |= result != statement;
+        }
+        return changed ? optimized : statements;
+    }
+
+    private Stmt optimize(Stmt statement) {
+        return statement == null ? null : statement.accept(this);
+    }
+
+    private Expr optimize(Expr expression) {
+        return expression == null ? null : expression.accept(this);
+    }
+
+    private List<Function> optimizeFunctions(List<Function> functions) {
+        List<Function> optimized = new ArrayList<>(functions.size());
+        boolean changed = false;
+        for (Function function : functions) {
+            Function result = (Function) optimize(function);
+            optimized.add(result);
+            changed |= result != function;
+        }
+        return changed ? optimized : functions;
+    }
+
+    @Override
+    public Expr visitAssignExpr(Assign expr) {
+        Expr value = optimize(expr.value);
+        if (value == expr.value) {
+            return expr;
+        }
+        Assign optimized = new Assign(expr.name, value);
+        optimized.depth = expr.depth;
+        optimized.slot = expr.slot;
+        return optimized;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Binary expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        if (left instanceof Literal && right instanceof Literal) {
+            Literal folded = fold(expr.operator, ((Literal) left).value, ((Literal) right).value);
+            if (folded != null) {
+                return folded;
+            }
+        }
+        if (left == expr.left && right == expr.right) {
+            return expr;
+        }
+        return new Binary(left, expr.operator, right);
+    }
+
+    /**
+     * @return the result of the operator, or null if it fails
+     */
+    private static Literal fold(Token operator, Object left, Object right) {
+        switch (operator.type) {
+            case EQUAL_EQUAL:
+                return new Literal(Interpreter.isEqual(left, right));
+            case BANG_EQUAL:
+                return new Literal(!Interpreter.isEqual(left, right));
+            case PLUS:
+                if (left instanceof String && right instanceof String) {
+                    return new Literal((String) left + (String) right);
+                }
+                break;
+            default:
+                break;
+        }
+        if (!(left instanceof Double && right instanceof Double)) {
+            return null;
+        }
+
+        double a = (double) left;
+        double b = (double) right;
+        switch (operator.type) {
+            case PLUS:
+                return new Literal(Numbers.box(a + b));
+            case MINUS:
+            case STAR:
+                return new Literal(Numbers.box(Numbers.calculate(operator, a, b)));
+            case SLASH:
+                return b == 0 ? null : new Literal(Numbers.box(Numbers.calculate(operator, a, b)));
+            case GREATER:
+                return new Literal(a > b);
+            case GREATER_EQUAL:
+                return new Literal(a >= b);
+            case LESS:
+                return new Literal(a < b);
+            case LESS_EQUAL:
+                return new Literal(a <= b);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Expr visitCallExpr(Call expr) {
+        Expr callee = optimize(expr.callee);
+        List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+        boolean changed = callee != expr.callee;
+        for (Expr argument : expr.arguments) {
+            Expr result = optimize(argument);
+            arguments.add(result);
+            changed |= result != argument;
+        }
+        return changed ? new Call(callee, expr.paren, arguments) : expr;
+    }
+
+    @Override
+    public Expr visitGetExpr(Get expr) {
+        Expr object = optimize(expr.object);
+        return object == expr.object ? expr : new Get(object, expr.name);
+    }
+
+    @Override
+    public Expr visitSetExpr(Set expr) {
+        Expr object = optimize(expr.object);
+        Expr value = optimize(expr.value);
+        if (object == expr.object && value == expr.value) {
+            return expr;
+        }
+        return new Set(object, expr.name, value);
+    }
+
+    @Override
+    public Expr visitThisExpr(This expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Grouping expr) {
+        return optimize(expr.expression);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Logical expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        if (left instanceof Literal) {
+            // or keeps a truthy left operand, and keeps a falsey one
+            boolean truthy = Interpreter.isTruthy(((Literal) left).value);
+            return truthy == (expr.operator.type == TokenType.OR) ? left : right;
+        }
+        if (left == expr.left && right == expr.right) {
+            return expr;
+        }
+        return new Logical(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitVariableExpr(Variable expr) {
+        Var declaration = resolver.declarations().get(expr);
+        Literal constant = declaration == null ? null : constants.get(declaration);
+        return constant == null ? expr : constant;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Unary expr) {
+        Expr right = optimize(expr.right);
+        if (right instanceof Literal) {
+            Object value = ((Literal) right).value;
+            if (expr.operator.type == TokenType.BANG) {
+                return new Literal(!Interpreter.isTruthy(value));
+            } else if (expr.operator.type == TokenType.MINUS && value instanceof Double) {
+                return new Literal(Numbers.box(-(double) value));
+            }
+        }
+        return right == expr.right ? expr : new Unary(expr.operator, right);
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Block stmt) {
+        List<Stmt> statements = optimize(stmt.statements);
+        For loop = CountedLoops.match(stmt.statements, statements, resolver);
+        if (loop != null) {
+            statements = Arrays.asList(statements.get(0), loop);
+        }
+        if (statements == stmt.statements) {
+            return stmt;
+        }
+        Block optimized = new Block(statements);
+        optimized.scoped = stmt.scoped;
+        return optimized;
+    }
+
+    @Override
+    public Stmt visitBreakStmt(Break stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitClassStmt(Class stmt) {
+        List<Function> methods = optimizeFunctions(stmt.methods);
+        List<Function> classMethods = optimizeFunctions(stmt.classMethods);
+        if (methods == stmt.methods && classMethods == stmt.classMethods) {
+            return stmt;
+        }
+        Class optimized = new Class(stmt.name, methods, classMethods);
+        optimized.cell = stmt.cell;
+        optimized.captures = stmt.captures;
+        return optimized;
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Expression stmt) {
+        Expr expression = optimize(stmt.expression);
+        return expression == stmt.expression ? stmt : new Expression(expression);
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Function stmt) {
+        List<Stmt> body = optimize(stmt.body);
+        if (body == stmt.body) {
+            return stmt;
+        }
+        Function optimized = new Function(stmt.name, stmt.params, body);
+        optimized.slots = stmt.slots;
+        optimized.cell = stmt.cell;
+        optimized.captures = stmt.captures;
+        optimized.cells = stmt.cells;
+        return optimized;
+    }
+
+    @Override
+    public Stmt visitIfStmt(If stmt) {
+        Expr condition = optimize(stmt.condition);
+        Stmt thenBranch = optimize(stmt.thenBranch);
+        Stmt elseBranch = optimize(stmt.elseBranch);
+        if (condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch) {
+            return stmt;
+        }
+        return new If(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Print stmt) {
+        Expr expression = optimize(stmt.expression);
+        return expression == stmt.expression ? stmt : new Print(expression);
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Return stmt) {
+        Expr expression = optimize(stmt.expression);
+        return expression == stmt.expression ? stmt : new Return(stmt.keyword, expression);
+    }
+
+    @Override
+    public Stmt visitVarStmt(Var stmt) {
+        Expr initializer = optimize(stmt.initializer);
+        if (initializer instanceof Literal && !resolver.assignments().containsKey(stmt)) {
+            constants.put(stmt, (Literal) initializer);
+        }
+        if (initializer == stmt.initializer) {
+            return stmt;
+        }
+        Var optimized = new Var(stmt.name, initializer);
+        optimized.cell = stmt.cell;
+        return optimized;
+    }
+
+    @Override
+    public Stmt visitForStmt(For stmt) {
+        // made by this optimizer, so it is optimized already
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitWhileStmt(While stmt) {
+        Expr condition = optimize(stmt.condition);
+        Stmt body = optimize(stmt.body);
+        if (condition == stmt.condition && body == stmt.body) {
+            return stmt;
+        }
+        return new While(condition, body);
+    }
+}
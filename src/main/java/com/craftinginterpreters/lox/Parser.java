@@ -5,14 +5,21 @@ import java.util.Arrays;
 import java.util.List;
 
 public class Parser {
-    private final List<Token> tokens;
-    private int current = 0;
+    private final Scanner scanner;
+    // only the current and the previous token are kept
+    private final TokenBuffer tokens;
+    private final ErrorReporter reporter;
+    private int current;
 
     /**
-     * @param tokens
+     * @param scanner scans the tokens as the parser goes
+     * @param reporter gets the syntax errors
      */
-    public Parser(List<Token> tokens) {
-        this.tokens = tokens;
+    Parser(Scanner scanner, ErrorReporter reporter) {
+        this.scanner = scanner;
+        this.tokens = scanner.buffer();
+        this.reporter = reporter;
+        this.current = scanner.scan();
     }
 
     List<Stmt> parse() {
@@ -443,14 +450,16 @@ public class Parser {
     }
 
     private Token consume(TokenType type, String message) {
-        if (check(type))
-            return advance();
+        if (check(type)) {
+            advance();
+            return previous();
+        }
 
         throw error(peek(), message);
     }
 
     private ParseError error(Token expected, String message) {
-        Lox.error(expected, message);
+        reporter.error(expected, message);
         return new ParseError();
     }
 
@@ -480,7 +489,7 @@ public class Parser {
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.token(current - 1);
     }
 
     private boolean match(TokenType... types) {
@@ -494,23 +503,23 @@ public class Parser {
         return false;
     }
 
-    private Token advance() {
-        if (!isAtEnd())
-            current++;
-        return previous();
+    private void advance() {
+        if (!isAtEnd()) {
+            current = scanner.scan();
+        }
     }
 
     private boolean check(TokenType type) {
         if (isAtEnd())
             return false;
-        return peek().type == type;
+        return tokens.type(current) == type;
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.token(current);
     }
 
     private boolean isAtEnd() {
-        return peek().type == TokenType.EOF;
+        return tokens.type(current) == TokenType.EOF;
     }
 }
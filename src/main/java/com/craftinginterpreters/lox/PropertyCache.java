@@ -0,0 +1,78 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Inline cache of a property access in the code. It remembers where the
+ * field is for the last few {@link Shape}s of the instances seen there, so
+ * the lookup by name only happens for shapes it has not seen yet.
+ */
+final class PropertyCache {
+
+    private static final int SIZE = 4;
+
+    /**
+     * Where the field is for one shape. Setting a new field also changes the
+     * shape of the instance.
+     */
+    static final class Entry {
+        final Shape shape;
+        /** index of the field, -1 if there is no such field */
+        final int index;
+        /** shape after setting the field */
+        final Shape next;
+
+        Entry(Shape shape, int index, Shape next) {
+            this.shape = shape;
+            this.index = index;
+            this.next = next;
+        }
+    }
+
+    // entries never change, so a race between threads only costs a lookup
+    private final Entry[] entries = new Entry[SIZE];
+    private int replace = 0;
+
+    /**
+     * @return the entry for the shape, or null if the access did not see
+     *         that shape yet
+     */
+    Entry find(Shape shape) {
+        for (Entry entry : entries) {
+            if (entry == null || entry.shape == shape) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up where the field is to read it, and remembers that.
+     */
+    Entry read(Shape shape, String name) {
+        return add(new Entry(shape, shape.indexOf(name), shape));
+    }
+
+    /**
+     * Looks up where the field is to write it, and remembers that.
+     */
+    Entry write(Shape shape, String name) {
+        int index = shape.indexOf(name);
+        if (index >= 0) {
+            return add(new Entry(shape, index, shape));
+        }
+        return add(new Entry(shape, shape.size(), shape.with(name)));
+    }
+
+    private Entry add(Entry entry) {
+        for (int i = 0; i < SIZE; i++) {
+            if (entries[i] == null) {
+                entries[i] = entry;
+                return entry;
+            }
+        }
+
+        // more shapes than fit, give the oldest one's place to the new one
+        entries[replace] = entry;
+        replace = (replace + 1) % SIZE;
+        return entry;
+    }
+}
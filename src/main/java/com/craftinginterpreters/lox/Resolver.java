@@ -1,6 +1,8 @@
 package com.craftinginterpreters.lox;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
@@ -21,6 +23,7 @@ import com.craftinginterpreters.lox.Stmt.Block;
 import com.craftinginterpreters.lox.Stmt.Break;
 import com.craftinginterpreters.lox.Stmt.Class;
 import com.craftinginterpreters.lox.Stmt.Expression;
+import com.craftinginterpreters.lox.Stmt.For;
 import com.craftinginterpreters.lox.Stmt.Function;
 import com.craftinginterpreters.lox.Stmt.If;
 import com.craftinginterpreters.lox.Stmt.Print;
@@ -29,7 +32,13 @@ import com.craftinginterpreters.lox.Stmt.While;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     private final Interpreter interpreter;
-    private final Stack<Map<String, VariableCheck>> scopes = new Stack<>();
+    private final Stack<Scope> scopes = new Stack<>();
+    private final List<Closure> closures = new ArrayList<>();
+    private final java.util.Set<String> predefined;
+    private final java.util.Set<String> usedGlobals = new HashSet<>();
+    private final Map<Variable, Var> declarations = new HashMap<>();
+    private final Map<Var, Integer> reads = new HashMap<>();
+    private final Map<Var, Integer> assignments = new HashMap<>();
     private FunctionType currentFunction = FunctionType.NONE;
 
     private enum FunctionType {
@@ -47,13 +56,126 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private ClassType currenClassType = ClassType.NONE;
 
+    /**
+     * A lexical scope. Besides the state of each variable it remembers the
+     * slot every variable gets in its {@link LocalEnvironment}, handed out in
+     * declaration order.
+     */
+    private static class Scope extends HashMap<String, VariableCheck> {
+        private final Map<String, Integer> slots = new HashMap<>();
+        private final Map<String, Stmt> declarations = new HashMap<>();
+        private final java.util.Set<String> captured = new HashSet<>();
+        private final java.util.Set<String> assigned = new HashSet<>();
+        /** the function whose parameters this scope holds, if any */
+        private Function function;
+
+        @Override
+        public VariableCheck put(String name, VariableCheck check) {
+            slots.putIfAbsent(name, slots.size());
+            return super.put(name, check);
+        }
+
+        int slotOf(String name) {
+            return slots.get(name);
+        }
+
+        int slotCount() {
+            return slots.size();
+        }
+
+        /**
+         * Puts the captured variables that get assigned into cells, and the
+         * captured functions and classes, which may capture themselves before
+         * they exist. The others get copied into the closures.
+         */
+        void markCells() {
+            List<Integer> cells = new ArrayList<>();
+            for (String name : captured) {
+                Stmt declaration = declarations.get(name);
+                if (declaration instanceof Var) {
+                    ((Var) declaration).cell = assigned.contains(name);
+                } else if (declaration instanceof Function) {
+                    ((Function) declaration).cell = true;
+                } else if (declaration instanceof Class) {
+                    ((Class) declaration).cell = true;
+                } else if (function != null && assigned.contains(name)) {
+                    // parameters take the first slots
+                    cells.add(slotOf(name));
+                }
+            }
+            if (!cells.isEmpty()) {
+                function.cells = toArray(cells);
+            }
+        }
+    }
+
+    /**
+     * A function, or a class for all of its methods, that captures the
+     * variables it uses from outside into an environment of its own. Methods
+     * share the one of their class, so {@link LoxInstance#scopeOfThis} stays
+     * the same for them.
+     */
+    private static class Closure {
+        /** index of its outermost scope, it is created in the one before */
+        private final int boundary;
+        /** depth and slot of each captured variable where it is created */
+        private final List<Integer> captures = new ArrayList<>();
+        /** slot of each captured variable, by index of its scope and name */
+        private final Map<String, Integer> slots = new HashMap<>();
+
+        Closure(int boundary) {
+            this.boundary = boundary;
+        }
+
+        int[] captures() {
+            return captures.isEmpty() ? null : toArray(captures);
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
     /**
      * @param interpreter
      */
     public Resolver(Interpreter interpreter) {
         this.interpreter = interpreter;
         // NOTE: We introduce a top-level stack entry here, otherwise the variable lookups for usage of classes do not work anymore
-        this.scopes.push(new HashMap<>());
+        // It stands for the globals, so it knows everything defined there already (natives, earlier REPL lines)
+        this.scopes.push(new Scope());
+        for (String name : interpreter.globals.names()) {
+            this.scopes.peek().put(name, VariableCheck.define());
+        }
+        this.predefined = new HashSet<>(interpreter.globals.names());
+    }
+
+    /**
+     * @return the globals defined before the statements that they use
+     */
+    java.util.Set<String> usedGlobals() {
+        return usedGlobals;
+    }
+
+    /**
+     * @return the local variable declarations the variables read
+     */
+    Map<Variable, Var> declarations() {
+        return declarations;
+    }
+
+    /**
+     * @return how often each local variable gets read, if at all
+     */
+    Map<Var, Integer> reads() {
+        return reads;
+    }
+
+    /**
+     * @return how often each local variable gets assigned to, if at all
+     */
+    Map<Var, Integer> assignments() {
+        return assignments;
     }
 
     void resolve(List<Stmt> statements) {
@@ -70,16 +192,98 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         expression.accept(this);
     }
 
-    private void resolveLocal(Expr expr, Token name) {
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-                scopes.get(i).put(name.lexeme, VariableCheck.access());
-                return;
+    /**
+     * @return index of the scope the variable was declared in, -1 for globals
+     */
+    private int resolveLocal(Token name) {
+        for (int i = scopes.size() - 1; i >= 1; i--) {
+            Scope scope = scopes.get(i);
+            if (scope.containsKey(name.lexeme)) {
+                scope.put(name.lexeme, VariableCheck.access());
+                return i;
             }
         }
-        
-        Lox.error(0, "Unknown Variable '" + name.lexeme + "'.");
+
+        // top-level variables are globals and get looked up by name
+        if (scopes.get(0).containsKey(name.lexeme)) {
+            scopes.get(0).put(name.lexeme, VariableCheck.access());
+            if (predefined.contains(name.lexeme)) {
+                usedGlobals.add(name.lexeme);
+            }
+            return -1;
+        }
+
+        interpreter.reporter.error(0, "Unknown Variable '" + name.lexeme + "'.");
+        return -1;
+    }
+
+    /**
+     * @return how many environments up the variable of the scope is, -1 for
+     *         globals
+     */
+    private int depthOf(int index) {
+        if (index < 0) {
+            return -1;
+        }
+        return depth(scopes.size() - 1, index, closures.size() - 1);
+    }
+
+    /**
+     * @param from index of the scope to look from
+     * @param index index of the scope of the variable
+     * @param closure index of the innermost closure around from
+     * @return how many environments up the variable is, which is the one the
+     *         closure captured it into if it is declared outside of it
+     */
+    private int depth(int from, int index, int closure) {
+        if (closure < 0 || index >= closures.get(closure).boundary) {
+            return from - index;
+        }
+        return from - closures.get(closure).boundary + 1;
+    }
+
+    private int slotOf(int index, Token name) {
+        if (index < 0) {
+            return -1;
+        }
+        return capture(closures.size() - 1, index, name.lexeme);
+    }
+
+    /**
+     * Captures a variable declared outside the closure into it, and into the
+     * closures between them.
+     *
+     * @return the slot of the variable as seen from within the closure
+     */
+    private int capture(int closure, int index, String name) {
+        if (closure < 0 || index >= closures.get(closure).boundary) {
+            return scopes.get(index).slotOf(name);
+        }
+        Closure current = closures.get(closure);
+        String key = index + " " + name;
+        if (!current.slots.containsKey(key)) {
+            int slot = capture(closure - 1, index, name);
+            current.captures.add(depth(current.boundary - 1, index, closure - 1));
+            current.captures.add(slot);
+            current.slots.put(key, current.slots.size());
+            scopes.get(index).captured.add(name);
+        }
+        return current.slots.get(key);
+    }
+
+    /**
+     * @return the local variable declaration of the name, null for globals,
+     *         parameters, functions and classes
+     */
+    private Var declarationOf(int index, Token name) {
+        Stmt declaration = index < 0 ? null : scopes.get(index).declarations.get(name.lexeme);
+        return declaration instanceof Var ? (Var) declaration : null;
+    }
+
+    private void remember(Token name, Stmt declaration) {
+        if (scopes.size() > 1) {
+            scopes.peek().declarations.put(name.lexeme, declaration);
+        }
     }
 
     private void declare(Token name) {
@@ -87,10 +291,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             return;
         }
 
-        Map<String, VariableCheck> scope = scopes.peek();
+        Scope scope = scopes.peek();
 
-        if (scope.containsKey(name.lexeme)) {
-            Lox.error(name, "Already a variable with this name in this scope.");
+        // globals may be redefined, e.g. on a later line of the REPL
+        if (scopes.size() > 1 && scope.containsKey(name.lexeme)) {
+            interpreter.reporter.error(name, "Already a variable with this name in this scope.");
         }
 
         scope.put(name.lexeme, VariableCheck.declare());
@@ -106,14 +311,30 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitBlockStmt(Block stmt) {
+        // a block declaring nothing, like most loop bodies, needs no environment
+        stmt.scoped = declaresAnything(stmt.statements);
+        if (!stmt.scoped) {
+            resolve(stmt.statements);
+            return null;
+        }
+
         beginScope();
         resolve(stmt.statements);
         endScope();
         return null;
     }
 
+    private static boolean declaresAnything(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement instanceof Var || statement instanceof Function || statement instanceof Class) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void beginScope() {
-        scopes.push(new HashMap<>());
+        scopes.push(new Scope());
     }
 
     private void endScope() {
@@ -127,15 +348,24 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             String s = unusedVars
                 .stream()
                 .collect(Collectors.joining(", "));
-            Lox.error(0, "Unused variables in block: " + s);
+            interpreter.reporter.error(0, "Unused variables in block: " + s);
         }
-        scopes.pop();
+        scopes.pop().markCells();
     }
 
     @Override
     public Void visitAssignExpr(Assign expr) {
         resolve(expr.value);
-        resolveLocal(expr, expr.name);
+        int index = resolveLocal(expr.name);
+        expr.depth = depthOf(index);
+        expr.slot = slotOf(index, expr.name);
+        if (index > 0) {
+            scopes.get(index).assigned.add(expr.name.lexeme);
+        }
+        Var declaration = declarationOf(index, expr.name);
+        if (declaration != null) {
+            assignments.merge(declaration, 1, Integer::sum);
+        }
         return null;
     }
 
@@ -191,10 +421,17 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             scopes.peek().containsKey(expr.name.lexeme) &&
             !scopes.peek().get(expr.name.lexeme).wasDefined()
         ) {
-            Lox.error(expr.name, "Can't read local variable in its own initializer.");
+            interpreter.reporter.error(expr.name, "Can't read local variable in its own initializer.");
         }
 
-        resolveLocal(expr, expr.name);
+        int index = resolveLocal(expr.name);
+        expr.depth = depthOf(index);
+        expr.slot = slotOf(index, expr.name);
+        Var declaration = declarationOf(index, expr.name);
+        if (declaration != null) {
+            declarations.put(expr, declaration);
+            reads.merge(declaration, 1, Integer::sum);
+        }
         return null;
     }
 
@@ -215,11 +452,13 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitThisExpr(This expr) {
         switch (this.currenClassType) {
             case CLASS:
-                resolveLocal(expr, expr.keyword);
+                int index = resolveLocal(expr.keyword);
+                expr.depth = depthOf(index);
+                expr.slot = slotOf(index, expr.keyword);
                 break;
             case NONE:
             default:
-                Lox.error(expr.keyword, "only allowed in a class context.");
+                interpreter.reporter.error(expr.keyword, "only allowed in a class context.");
                 break;
 
         }
@@ -241,8 +480,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitFunctionStmt(Function stmt) {
         declare(stmt.name);
         define(stmt.name);
+        remember(stmt.name, stmt);
 
+        closures.add(new Closure(scopes.size()));
         resolveFunction(stmt, FunctionType.FUNCTION);
+        stmt.captures = closures.remove(closures.size() - 1).captures();
         return null;
     }
 
@@ -250,11 +492,13 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
         beginScope();
+        scopes.peek().function = function;
         for (Token param : function.params) {
             declare(param);
             define(param);
         }
         resolve(function.body);
+        function.slots = scopes.peek().slotCount();
         endScope();
         currentFunction = enclosingFunction;
     }
@@ -278,11 +522,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) {
       if (currentFunction == FunctionType.NONE) {
-        Lox.error(stmt.keyword, "Can't return from top-level code.");
+        interpreter.reporter.error(stmt.keyword, "Can't return from top-level code.");
       }
 
       if (currentFunction == FunctionType.INITIALIZER) {
-        Lox.error(stmt.keyword, "Can't returm from an initializer.");
+        interpreter.reporter.error(stmt.keyword, "Can't returm from an initializer.");
       }
       
         if (stmt.expression != null) {
@@ -299,6 +543,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             resolve(stmt.initializer);
         }
         define(stmt.name);
+        remember(stmt.name, stmt);
         return null;
     }
 
@@ -309,13 +554,20 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitForStmt(For stmt) {
+        return CountedLoops.toWhile(stmt).accept(this);
+    }
+
     @Override
     public Void visitClassStmt(Class stmt) {
         currenClassType = ClassType.CLASS;
 
         declare(stmt.name);
         define(stmt.name);
+        remember(stmt.name, stmt);
 
+        closures.add(new Closure(scopes.size()));
         beginScope();
         // mark a usage of "this" as defined in the new scope (needs to end after class)
         scopes.peek().put("this", VariableCheck.define());
@@ -334,7 +586,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         }
 
         endScope();
-        
+        stmt.captures = closures.remove(closures.size() - 1).captures();
+
         currenClassType = ClassType.NONE;
         return null;
     }
@@ -1,9 +1,14 @@
 package com.craftinginterpreters.lox;
 
+/**
+ * Unwinds a function call to hand back its result. Thrown on every return,
+ * so it does without a stack trace.
+ */
 public class Return extends RuntimeException {
     final Object value;
 
     Return(Object value) {
+        super(null, null, false, false);
         this.value = value;
     }
 
@@ -1,58 +1,84 @@
 package com.craftinginterpreters.lox;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-
-public class Scanner {
-
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-
-    private static final Map<String, TokenType> keywords;
-
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and", TokenType.AND);
-        keywords.put("or", TokenType.OR);
-        keywords.put("class", TokenType.CLASS);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("if", TokenType.IF);
-        keywords.put("false", TokenType.FALSE);
-        keywords.put("true", TokenType.TRUE);
-        keywords.put("for", TokenType.FOR);
-        keywords.put("while", TokenType.WHILE);
-        keywords.put("break", TokenType.BREAK);
-        keywords.put("fun", TokenType.FUN);
-        keywords.put("nil", TokenType.NIL);
-        keywords.put("print", TokenType.PRINT);
-        keywords.put("return", TokenType.RETURN);
-        keywords.put("super", TokenType.SUPER);
-        keywords.put("this", TokenType.THIS);
-        keywords.put("var", TokenType.VAR);
-    }
+import java.util.NoSuchElementException;
+
+/**
+ * Turns the source into tokens one at a time, as the {@link Parser} asks for
+ * them, ending with an EOF token.
+ */
+public class Scanner implements Iterator<Token> {
+
+    private final CharSequence source;
+    private final ErrorReporter reporter;
+    // the current and the previous token are all the parser looks at
+    private final TokenBuffer tokens;
+    private final Symbols symbols = new Symbols();
+    private boolean atEnd = false;
 
     private int start = 0;
     private int current = 0;
     private int line = 1;
 
-    public Scanner(String source) {
+    public Scanner(CharSequence source) {
+        this(source, new ErrorReporter(null));
+    }
+
+    /**
+     * @param source the script, read as it gets scanned, see {@link SourceFile}
+     */
+    Scanner(CharSequence source, ErrorReporter reporter) {
         this.source = source;
+        this.reporter = reporter;
+        this.tokens = new TokenBuffer(source, symbols, 2);
     }
 
+    /**
+     * @return all the remaining tokens
+     */
     public List<Token> scanTokens() {
-        loop();
-        tokens.add(new Token(TokenType.EOF, "", null, line));
+        List<Token> tokens = new ArrayList<>();
+        while (hasNext()) {
+            tokens.add(next());
+        }
+        return tokens;
+    }
 
-        return this.tokens;
+    @Override
+    public boolean hasNext() {
+        return !atEnd;
     }
 
-    private void loop() {
-        while (!isAtEnd()) {
+    @Override
+    public Token next() {
+        return tokens.token(scan());
+    }
+
+    /**
+     * Scans the next token into the {@link #buffer()}.
+     *
+     * @return the index of the token in the buffer
+     */
+    int scan() {
+        int index = tokens.size();
+        while (tokens.size() == index) {
+            if (isAtEnd()) {
+                if (atEnd) {
+                    throw new NoSuchElementException();
+                }
+                atEnd = true;
+                return tokens.add(TokenType.EOF, current, current, line, null);
+            }
             start = current;
             scanToken();
         }
+        return index;
+    }
+
+    TokenBuffer buffer() {
+        return tokens;
     }
 
     private void scanToken() {
@@ -77,16 +103,16 @@ public class Scanner {
                 addToken(TokenType.DOT);
                 break;
             case '-':
-                addToken(TokenType.MINUS, c);
+                addToken(TokenType.MINUS);
                 break;
             case '+':
-                addToken(TokenType.PLUS, c);
+                addToken(TokenType.PLUS);
                 break;
             case ';':
                 addToken(TokenType.SEMICOLON);
                 break;
             case '*':
-                addToken(TokenType.STAR, c);
+                addToken(TokenType.STAR);
                 break;
 
             case '!':
@@ -110,7 +136,7 @@ public class Scanner {
                 } else if (match('*')) {
                     handleMultilineComments();
                 } else {
-                    addToken(TokenType.SLASH, c);
+                    addToken(TokenType.SLASH);
                 }
                 break;
 
@@ -134,7 +160,7 @@ public class Scanner {
                 } else if (isAlpha(c)) {
                     handleIdentifier();
                 } else {
-                    Lox.error(line, "Unexpected character: " + c);
+                    reporter.error(line, "Unexpected character: " + c);
                 }
                 break;
         }
@@ -173,20 +199,14 @@ public class Scanner {
         }
 
         if (!commentEnded) {
-            Lox.error(line, "Unterminated multiline comment");
+            reporter.error(line, "Unterminated multiline comment");
         }
     }
 
     private void handleIdentifier() {
         while (isAlphaNumeric(peek())) advance();
 
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) {
-            addToken(TokenType.IDENTIFIER, text);
-        } else {
-            addToken(type, text);
-        }
+        addToken(Symbols.keyword(source, start, current), symbols.intern(source, start, current));
     }
 
     private boolean isAlphaNumeric(char c) {
@@ -213,7 +233,7 @@ public class Scanner {
                 advance();
         }
 
-        addToken(TokenType.NUMBER, Double.parseDouble(source.substring(start, current)));
+        addToken(TokenType.NUMBER);
     }
 
     private char peekNext() {
@@ -234,15 +254,13 @@ public class Scanner {
         }
 
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string, mate!");
+            reporter.error(line, "Unterminated string, mate!");
             return;
         }
 
         advance(); // the closing ".
 
-        // trim the surrounding quotes
-        String value = source.substring(start + 1, current - 1);
-        addToken(TokenType.STRING, value);
+        addToken(TokenType.STRING);
     }
 
     private char peek() {
@@ -269,16 +287,8 @@ public class Scanner {
         addToken(type, null);
     }
 
-    private void addToken(TokenType type, char lexeme) {
-        addToken(type, "" + lexeme);
-    }
-
     private void addToken(TokenType type, String lexeme) {
-        tokens.add(new Token(type, lexeme, lexeme, line));
-    }
-
-    private void addToken(TokenType type, Object literal) {
-        tokens.add(new Token(type, null, literal, line));
+        tokens.add(type, start, current, line, lexeme);
     }
 
     private boolean isAtEnd() {
@@ -0,0 +1,162 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiled scripts by the hash of their source, so running the same source
+ * again skips scanning, parsing and resolving. Keeps the scripts used most
+ * recently. One cache can be shared by many {@link Lox} instances.
+ *
+ * <p>With a directory the scripts are also kept on disk, in the
+ * {@link AstFormat}, so they outlive the process. The cache is only ever an
+ * optimization: files it can not read or write are compiled anew.
+ */
+public final class ScriptCache {
+
+    private static final String SUFFIX = ".loxc";
+
+    private final Map<String, CompiledScript> scripts;
+    // null keeps the scripts in memory only
+    private final Path directory;
+
+    /**
+     * @param maxScripts the number of scripts to keep in memory
+     */
+    public ScriptCache(int maxScripts) {
+        this(maxScripts, null);
+    }
+
+    /**
+     * @param maxScripts the number of scripts to keep in memory
+     * @param directory where to keep compiled scripts across runs, created
+     *        when needed, null to keep them in memory only
+     */
+    public ScriptCache(int maxScripts, Path directory) {
+        this.scripts = new LinkedHashMap<String, CompiledScript>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+                return size() > maxScripts;
+            }
+        };
+        this.directory = directory;
+    }
+
+    /**
+     * @return the key of the source in the cache, also the name of its file
+     */
+    static String hash(CharSequence source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, source);
+            StringBuilder hash = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hash.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hash.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Digests the source in UTF-8, without a copy of all of it.
+     */
+    private static void update(MessageDigest digest, CharSequence source) {
+        if (source instanceof SourceFile.Ascii) {
+            digest.update(((SourceFile.Ascii) source).bytes());
+            return;
+        }
+        if (source instanceof String) {
+            digest.update(((String) source).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.wrap(source);
+        ByteBuffer bytes = ByteBuffer.allocate(8192);
+        boolean done = false;
+        while (!done) {
+            done = encoder.encode(chars, bytes, true).isUnderflow() && encoder.flush(bytes).isUnderflow();
+            bytes.flip();
+            digest.update(bytes);
+            bytes.clear();
+        }
+    }
+
+    CompiledScript get(String hash) {
+        synchronized (this) {
+            CompiledScript script = scripts.get(hash);
+            if (script != null || directory == null) {
+                return script;
+            }
+        }
+
+        CompiledScript script = load(hash);
+        if (script != null) {
+            synchronized (this) {
+                scripts.put(hash, script);
+            }
+        }
+        return script;
+    }
+
+    void put(String hash, CompiledScript script) {
+        synchronized (this) {
+            scripts.put(hash, script);
+        }
+        if (directory != null) {
+            store(hash, script);
+        }
+    }
+
+    synchronized int size() {
+        return scripts.size();
+    }
+
+    private CompiledScript load(String hash) {
+        try (FileChannel channel = FileChannel.open(directory.resolve(hash + SUFFIX), StandardOpenOption.READ)) {
+            return AstReader.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), hash);
+        } catch (IOException | IllegalArgumentException | BufferUnderflowException e) {
+            // missing, unreadable or malformed: it gets written anew
+            return null;
+        }
+    }
+
+    private void store(String hash, CompiledScript script) {
+        try {
+            Files.createDirectories(directory);
+            // a whole file or none at all, even with other processes reading
+            Path temporary = Files.createTempFile(directory, hash, ".tmp");
+            try {
+                Files.write(temporary, AstWriter.write(script, hash));
+                Files.move(temporary, directory.resolve(hash + SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            // the next run compiles the script again
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs scripts side by side, each on a thread of its own with globals,
+ * output and errors of its own. Every script gets the same limits, checked
+ * by the engine while it runs.
+ *
+ * <p>On Java 21 and later every script gets a virtual thread, before that
+ * a thread from a cached pool.
+ */
+public final class ScriptExecutor implements AutoCloseable {
+
+    private static final String CHARSET = "UTF-8";
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
+    private final Engine engine;
+    private final long maxSteps;
+    private final long timeout;
+    private final ExecutorService executor;
+    private final ScriptCache cache;
+
+    /**
+     * @param engine runs the scripts
+     * @param maxSteps the number of steps a script may take, see {@link Budget}
+     * @param timeout the wall time a script may take
+     */
+    public ScriptExecutor(Engine engine, long maxSteps, Duration timeout) {
+        this(engine, maxSteps, timeout, new ScriptCache(DEFAULT_CACHE_SIZE));
+    }
+
+    /**
+     * @param engine runs the scripts
+     * @param maxSteps the number of steps a script may take, see {@link Budget}
+     * @param timeout the wall time a script may take
+     * @param cache compiled scripts to reuse
+     */
+    public ScriptExecutor(Engine engine, long maxSteps, Duration timeout, ScriptCache cache) {
+        this(engine, maxSteps, timeout, cache, threadPerTask());
+    }
+
+    ScriptExecutor(Engine engine, long maxSteps, Duration timeout, ScriptCache cache, ExecutorService executor) {
+        this.engine = engine;
+        this.maxSteps = maxSteps;
+        this.timeout = timeout.toNanos();
+        this.cache = cache;
+        this.executor = executor;
+    }
+
+    private static ExecutorService threadPerTask() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException noVirtualThreads) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Runs a script. Cancelling the future with interruption stops the
+     * script at its next check of the limits.
+     */
+    public Future<ScriptResult> submit(String source) {
+        return executor.submit(() -> run(source));
+    }
+
+    private ScriptResult run(String source) throws UnsupportedEncodingException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(output, true, CHARSET);
+        PrintStream err = new PrintStream(errors, true, CHARSET);
+
+        Lox lox = new Lox(engine, out, err, cache);
+        boolean success;
+        try {
+            CompiledScript script = lox.compile(source);
+            if (script != null) {
+                lox.limit(new Budget(maxSteps, timeout));
+                lox.execute(script);
+            }
+            success = !lox.hadError();
+        } catch (LimitExceededError | StackOverflowError error) {
+            err.println(error.toString());
+            success = false;
+        } catch (RuntimeException error) {
+            // keeps what the script printed before
+            lox.report(error);
+            success = false;
+        }
+
+        return new ScriptResult(success, output.toString(CHARSET), errors.toString(CHARSET));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,44 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * What a script run by a {@link ScriptExecutor} printed, and whether it ran
+ * without errors.
+ */
+public final class ScriptResult {
+
+    private final boolean success;
+    private final String output;
+    private final String errors;
+
+    ScriptResult(boolean success, String output, String errors) {
+        this.success = success;
+        this.output = output;
+        this.errors = errors;
+    }
+
+    /**
+     * @return false if the script had an error or ran over a limit
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * @return everything the script printed
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * @return the errors reported while running the script
+     */
+    public String getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "<ScriptResult success=" + success + ">";
+    }
+}
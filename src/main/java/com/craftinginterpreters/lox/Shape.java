@@ -0,0 +1,57 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Layout of the fields of {@link LoxInstance}s, also known as hidden class.
+ * Instances that got the same fields in the same order share one shape,
+ * which tells the index of each field in their array of values. Shapes
+ * never change, adding a field moves an instance on to the next shape.
+ *
+ * Every {@link Interpreter} grows a tree of shapes of its own, so the shapes
+ * of the scripts it ran go away together with it.
+ */
+final class Shape {
+
+    private final Map<String, Integer> indexes;
+    private final Map<String, Shape> transitions = new ConcurrentHashMap<>();
+
+    private Shape(Map<String, Integer> indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * @return the shape of instances without fields, the root of a new tree
+     */
+    static Shape empty() {
+        return new Shape(new HashMap<>());
+    }
+
+    /**
+     * @return the index of the field, or -1 if there is no such field
+     */
+    int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return number of fields
+     */
+    int size() {
+        return indexes.size();
+    }
+
+    /**
+     * @return the shape with the field added after the fields of this one
+     */
+    Shape with(String name) {
+        return transitions.computeIfAbsent(name, field -> {
+            Map<String, Integer> next = new HashMap<>(indexes);
+            next.put(field, indexes.size());
+            return new Shape(next);
+        });
+    }
+}
@@ -0,0 +1,219 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Opens a script as a {@link CharSequence} for the {@link Scanner} without
+ * copying it into the heap. The file is memory-mapped; pure ASCII files are
+ * read through a view of the mapped bytes, other files get decoded from UTF-8
+ * a chunk at a time as they are read.
+ */
+final class SourceFile {
+
+    private SourceFile() {
+    }
+
+    static CharSequence open(Path path) throws IOException {
+        ByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Script is larger than 2 GiB: " + path);
+            }
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (isAscii(bytes)) {
+            return new Ascii(bytes);
+        }
+        return new Utf8(bytes);
+    }
+
+    private static CharsetDecoder decoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static void check(CoderResult result) throws CharacterCodingException {
+        if (result.isError()) {
+            result.throwException();
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ASCII bytes as chars, which is also their UTF-8.
+     */
+    static final class Ascii implements CharSequence {
+
+        private final ByteBuffer bytes;
+
+        Ascii(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return the bytes of the source, encoded in UTF-8
+         */
+        ByteBuffer bytes() {
+            return bytes.duplicate();
+        }
+
+        @Override
+        public int length() {
+            return bytes.remaining();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(bytes.position() + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            ByteBuffer slice = bytes.duplicate();
+            slice.position(bytes.position() + start);
+            slice.limit(bytes.position() + end);
+            return new Ascii(slice.slice());
+        }
+
+        @Override
+        public String toString() {
+            byte[] text = new byte[bytes.remaining()];
+            bytes.duplicate().get(text);
+            return new String(text, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * UTF-8 bytes as chars. Opening decodes the file once to find where each
+     * chunk of {@value #CHUNK} chars starts; reading a char decodes its chunk
+     * again, unless it is the chunk read last. So only one chunk is held
+     * decoded at a time, not a copy of the whole file.
+     */
+    static final class Utf8 implements CharSequence {
+
+        private static final int CHUNK = 8192;
+
+        private final ByteBuffer bytes;
+        // the first char and byte of each chunk, followed by the ends
+        private final int[] charStarts;
+        private final int[] byteStarts;
+        private final int chunks;
+        // its fields are final, so threads can share it without locks
+        private Chunk last;
+
+        private static final class Chunk {
+            final int start;
+            final char[] chars;
+
+            Chunk(int start, char[] chars) {
+                this.start = start;
+                this.chars = chars;
+            }
+        }
+
+        Utf8(ByteBuffer bytes) throws CharacterCodingException {
+            this.bytes = bytes;
+            // every chunk but the last has at least CHUNK - 1 chars, each of
+            // at least one byte
+            int capacity = bytes.remaining() / (CHUNK - 1) + 2;
+            this.charStarts = new int[capacity];
+            this.byteStarts = new int[capacity];
+
+            CharsetDecoder decoder = decoder();
+            ByteBuffer input = bytes.duplicate();
+            CharBuffer window = CharBuffer.allocate(CHUNK);
+            int length = 0;
+            int count = 0;
+            boolean more = true;
+            while (more) {
+                int start = input.position();
+                window.clear();
+                CoderResult result = decoder.decode(input, window, true);
+                check(result);
+                more = result.isOverflow();
+                if (window.position() > 0) {
+                    charStarts[count] = length;
+                    byteStarts[count] = start;
+                    count++;
+                    length += window.position();
+                }
+            }
+            window.clear();
+            check(decoder.flush(window));
+            charStarts[count] = length;
+            byteStarts[count] = input.position();
+            this.chunks = count;
+        }
+
+        @Override
+        public int length() {
+            return charStarts[chunks];
+        }
+
+        @Override
+        public char charAt(int index) {
+            Chunk chunk = last;
+            if (chunk == null || index < chunk.start || index >= chunk.start + chunk.chars.length) {
+                chunk = decode(index);
+                last = chunk;
+            }
+            return chunk.chars[index - chunk.start];
+        }
+
+        private Chunk decode(int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+            }
+            int found = Arrays.binarySearch(charStarts, 0, chunks, index);
+            int chunk = found >= 0 ? found : -found - 2;
+
+            ByteBuffer input = bytes.duplicate();
+            input.limit(byteStarts[chunk + 1]);
+            input.position(byteStarts[chunk]);
+            CharBuffer chars = CharBuffer.allocate(charStarts[chunk + 1] - charStarts[chunk]);
+            CharsetDecoder decoder = decoder();
+            try {
+                check(decoder.decode(input, chars, true));
+                check(decoder.flush(chars));
+            } catch (CharacterCodingException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (chars.hasRemaining() || input.hasRemaining()) {
+                throw new IllegalStateException("The script changed while it was read");
+            }
+            return new Chunk(charStarts[chunk], chars.array());
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new StringBuilder(end - start).append(this, start, end).toString();
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
@@ -18,6 +18,7 @@ abstract class Stmt implements Input {
     R visitReturnStmt(Return stmt);
     R visitBreakStmt(Break stmt);
     R visitWhileStmt(While stmt);
+    R visitForStmt(For stmt);
     R visitVarStmt(Var stmt);
 }
 
@@ -25,6 +26,7 @@ abstract class Stmt implements Input {
 
   static class Block extends Stmt {
     final List<Stmt> statements;
+    boolean scoped = true;
 
     Block(List<Stmt> statements) {
       this.statements = statements;
@@ -40,6 +42,8 @@ abstract class Stmt implements Input {
     final Token name;
     final List<Stmt.Function> methods;
     final List<Stmt.Function> classMethods;
+    boolean cell = false;
+    int[] captures = null;
 
     Class(Token name, List<Stmt.Function> methods, List<Stmt.Function> classMethods) {
       this.name = name;
@@ -70,6 +74,10 @@ abstract class Stmt implements Input {
     final Token name;
     final List<Token> params;
     final List<Stmt> body;
+    int slots = 0;
+    boolean cell = false;
+    int[] captures = null;
+    int[] cells = null;
 
     Function(Token name, List<Token> params, List<Stmt> body) {
       this.name = name;
@@ -156,9 +164,32 @@ abstract class Stmt implements Input {
     }
   }
 
+  static class For extends Stmt {
+    final Expr.Variable counter;
+    final Token operator;
+    final Expr limit;
+    final double step;
+    final Stmt body;
+    boolean materialized = true;
+
+    For(Expr.Variable counter, Token operator, Expr limit, double step, Stmt body) {
+      this.counter = counter;
+      this.operator = operator;
+      this.limit = limit;
+      this.step = step;
+      this.body = body;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitForStmt(this);
+    }
+  }
+
   static class Var extends Stmt {
     final Token name;
     final Expr initializer;
+    boolean cell = false;
 
     Var(Token name, Expr initializer) {
       this.name = name;
@@ -0,0 +1,117 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * Names and strings of a source, so every occurrence of the same text is
+ * the same {@link String}. Looking up text seen before makes no new string.
+ */
+final class Symbols {
+
+    private static final String[][] KEYWORDS = new String[128][];
+    private static final TokenType[][] KEYWORD_TYPES = new TokenType[128][];
+
+    static {
+        keyword("and", TokenType.AND);
+        keyword("break", TokenType.BREAK);
+        keyword("class", TokenType.CLASS);
+        keyword("else", TokenType.ELSE);
+        keyword("false", TokenType.FALSE);
+        keyword("for", TokenType.FOR);
+        keyword("fun", TokenType.FUN);
+        keyword("if", TokenType.IF);
+        keyword("nil", TokenType.NIL);
+        keyword("or", TokenType.OR);
+        keyword("print", TokenType.PRINT);
+        keyword("return", TokenType.RETURN);
+        keyword("super", TokenType.SUPER);
+        keyword("this", TokenType.THIS);
+        keyword("true", TokenType.TRUE);
+        keyword("var", TokenType.VAR);
+        keyword("while", TokenType.WHILE);
+    }
+
+    // open addressing, at most half full
+    private String[] table = new String[64];
+    private int count = 0;
+
+    private static void keyword(String word, TokenType type) {
+        char first = word.charAt(0);
+        int size = KEYWORDS[first] == null ? 0 : KEYWORDS[first].length;
+        KEYWORDS[first] = Arrays.copyOf(KEYWORDS[first] == null ? new String[0] : KEYWORDS[first], size + 1);
+        KEYWORD_TYPES[first] = Arrays.copyOf(KEYWORD_TYPES[first] == null ? new TokenType[0] : KEYWORD_TYPES[first], size + 1);
+        KEYWORDS[first][size] = word;
+        KEYWORD_TYPES[first][size] = type;
+    }
+
+    /**
+     * @return the keyword the text is, {@link TokenType#IDENTIFIER} if none
+     */
+    static TokenType keyword(CharSequence source, int start, int end) {
+        char first = source.charAt(start);
+        String[] words = first < KEYWORDS.length ? KEYWORDS[first] : null;
+        if (words != null) {
+            for (int i = 0; i < words.length; i++) {
+                if (matches(words[i], source, start, end)) {
+                    return KEYWORD_TYPES[first][i];
+                }
+            }
+        }
+        return TokenType.IDENTIFIER;
+    }
+
+    /**
+     * @return the one string with the text between start and end
+     */
+    String intern(CharSequence source, int start, int end) {
+        // the same hash as String.hashCode(), which strings keep
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        int mask = table.length - 1;
+        for (int i = (hash ^ (hash >>> 16)) & mask;; i = (i + 1) & mask) {
+            String symbol = table[i];
+            if (symbol == null) {
+                symbol = source.subSequence(start, end).toString();
+                table[i] = symbol;
+                if (++count * 2 > table.length) {
+                    grow();
+                }
+                return symbol;
+            }
+            if (symbol.hashCode() == hash && matches(symbol, source, start, end)) {
+                return symbol;
+            }
+        }
+    }
+
+    private void grow() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String symbol : old) {
+            if (symbol != null) {
+                int hash = symbol.hashCode();
+                int i = (hash ^ (hash >>> 16)) & mask;
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = symbol;
+            }
+        }
+    }
+
+    private static boolean matches(String text, CharSequence source, int start, int end) {
+        if (text.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
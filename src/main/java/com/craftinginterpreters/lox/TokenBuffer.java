@@ -0,0 +1,107 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * The last tokens of a {@link Scanner} as parallel arrays of their type,
+ * position in the source and line. The {@link Token} objects, with their
+ * lexeme and literal, are only made for the tokens someone asks for, which
+ * the parser does for the ones it keeps in the tree.
+ */
+final class TokenBuffer {
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final CharSequence source;
+    private final Symbols symbols;
+    private final int mask;
+    private final int[] types;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] lines;
+    // text the scanner had at hand anyway, null to take it from the source
+    private final String[] texts;
+    private final Token[] tokens;
+    private int count = 0;
+
+    /**
+     * @param symbols interns the strings of the source
+     * @param capacity how many of the last tokens to keep, a power of two
+     */
+    TokenBuffer(CharSequence source, Symbols symbols, int capacity) {
+        this.source = source;
+        this.symbols = symbols;
+        this.mask = capacity - 1;
+        this.types = new int[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.lines = new int[capacity];
+        this.texts = new String[capacity];
+        this.tokens = new Token[capacity];
+    }
+
+    /**
+     * @param text the lexeme, if known, else it is taken from the source
+     * @return the index of the token
+     */
+    int add(TokenType type, int start, int end, int line, String text) {
+        int slot = count & mask;
+        types[slot] = type.ordinal();
+        starts[slot] = start;
+        ends[slot] = end;
+        lines[slot] = line;
+        texts[slot] = text;
+        tokens[slot] = null;
+        return count++;
+    }
+
+    /**
+     * @return the number of tokens added so far
+     */
+    int size() {
+        return count;
+    }
+
+    TokenType type(int index) {
+        return TYPES[types[index & mask]];
+    }
+
+    Token token(int index) {
+        int slot = index & mask;
+        if (tokens[slot] == null) {
+            tokens[slot] = materialize(slot);
+        }
+        return tokens[slot];
+    }
+
+    private Token materialize(int slot) {
+        TokenType type = TYPES[types[slot]];
+        int line = lines[slot];
+        if (texts[slot] != null) {
+            return new Token(type, texts[slot], texts[slot], line);
+        }
+
+        switch (type) {
+            case EOF:
+                return new Token(type, "", null, line);
+            case NUMBER:
+                return new Token(type, null, Double.parseDouble(text(starts[slot], ends[slot])), line);
+            case STRING:
+                // without the quotes
+                String value = symbols.intern(source, starts[slot] + 1, ends[slot] - 1);
+                return new Token(type, value, value, line);
+            case MINUS:
+                return new Token(type, "-", "-", line);
+            case PLUS:
+                return new Token(type, "+", "+", line);
+            case STAR:
+                return new Token(type, "*", "*", line);
+            case SLASH:
+                return new Token(type, "/", "/", line);
+            default:
+                return new Token(type, null, null, line);
+        }
+    }
+
+    private String text(int start, int end) {
+        return source.subSequence(start, end).toString();
+    }
+}
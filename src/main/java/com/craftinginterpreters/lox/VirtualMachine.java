@@ -0,0 +1,292 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.craftinginterpreters.lox.Interpreter.InterpreterError;
+
+/**
+ * Stack based virtual machine running the {@link Chunk}s of the
+ * {@link BytecodeCompiler}. Each call runs its chunk in a fresh frame with an
+ * operand stack sized by the compiler; variables keep living in
+ * {@link LocalEnvironment}s, so closures work as with the other engines.
+ *
+ * Runtime semantics and error messages are the ones of the {@link Interpreter}.
+ */
+public class VirtualMachine {
+
+    private final Interpreter interpreter;
+    private final Environment globals;
+    private final Budget budget;
+
+    /**
+     * @param interpreter provides the globals and is handed to native functions
+     */
+    public VirtualMachine(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals;
+        this.budget = interpreter.budget;
+    }
+
+    public void interpret(List<Stmt> statements) {
+        Chunk script = new BytecodeCompiler().compile(statements);
+        try {
+            run(script, null);
+        } catch (InterpreterError error) {
+            interpreter.reporter.error(error);
+        }
+    }
+
+    Object run(Chunk chunk, LocalEnvironment environment) {
+        final int[] code = chunk.code;
+        final Object[] constants = chunk.constants;
+        final Object[] stack = new Object[chunk.maxStack];
+        LocalEnvironment local = environment;
+        int sp = 0;
+        int ip = 0;
+
+        for (;;) {
+            int instruction = code[ip++];
+            switch (instruction) {
+                case OpCode.CONSTANT:
+                    stack[sp++] = constants[code[ip++]];
+                    break;
+                case OpCode.NIL:
+                    stack[sp++] = null;
+                    break;
+                case OpCode.TRUE:
+                    stack[sp++] = Boolean.TRUE;
+                    break;
+                case OpCode.FALSE:
+                    stack[sp++] = Boolean.FALSE;
+                    break;
+                case OpCode.POP:
+                    stack[--sp] = null;
+                    break;
+
+                case OpCode.GET_GLOBAL:
+                    stack[sp++] = globals.get((Token) constants[code[ip++]]);
+                    break;
+                case OpCode.GET_LOCAL:
+                    stack[sp++] = local.getAt(code[ip], code[ip + 1]);
+                    ip += 2;
+                    break;
+                case OpCode.SET_LOCAL:
+                    local.assignAt(code[ip], code[ip + 1], stack[sp - 1]);
+                    ip += 2;
+                    break;
+                case OpCode.DEFINE_LOCAL:
+                    local.define(stack[--sp]);
+                    break;
+                case OpCode.PUSH_SCOPE:
+                    local = new LocalEnvironment(local);
+                    break;
+                case OpCode.POP_SCOPE:
+                    local = local.enclosing();
+                    break;
+
+                case OpCode.EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Interpreter.isEqual(stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.NOT_EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = !Interpreter.isEqual(stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.GREATER:
+                case OpCode.GREATER_EQUAL:
+                case OpCode.LESS:
+                case OpCode.LESS_EQUAL:
+                case OpCode.ADD:
+                case OpCode.SUBTRACT:
+                case OpCode.MULTIPLY:
+                case OpCode.DIVIDE: {
+                    Token operator = (Token) constants[code[ip++]];
+                    Object right = stack[--sp];
+                    stack[sp - 1] = binary(instruction, stack[sp - 1], right, operator);
+                    break;
+                }
+                case OpCode.NOT:
+                    stack[sp - 1] = !Interpreter.isTruthy(stack[sp - 1]);
+                    break;
+                case OpCode.NEGATE:
+                    stack[sp - 1] = Numbers.box(-Numbers.check((Token) constants[code[ip++]], stack[sp - 1]));
+                    break;
+
+                case OpCode.JUMP:
+                    ip = code[ip];
+                    break;
+                case OpCode.LOOP:
+                    if (budget != null) budget.charge();
+                    ip = code[ip];
+                    break;
+                case OpCode.JUMP_IF_FALSE:
+                    ip = Interpreter.isTruthy(stack[sp - 1]) ? ip + 1 : code[ip];
+                    break;
+                case OpCode.JUMP_IF_TRUE:
+                    ip = Interpreter.isTruthy(stack[sp - 1]) ? code[ip] : ip + 1;
+                    break;
+
+                case OpCode.CALL: {
+                    int argumentCount = code[ip++];
+                    Token paren = (Token) constants[code[ip++]];
+                    sp -= argumentCount;
+                    stack[sp - 1] = call(stack[sp - 1], stack, sp, argumentCount, paren);
+                    break;
+                }
+                case OpCode.RETURN:
+                    return stack[--sp];
+
+                default:
+                    sp = execute(instruction, chunk, ip, stack, sp, local);
+                    ip += OpCode.operands(code, ip - 1);
+                    break;
+            }
+        }
+    }
+
+    private Object binary(int instruction, Object left, Object right, Token operator) {
+        switch (instruction) {
+            case OpCode.GREATER:
+                return Numbers.check(operator, left) > Numbers.check(operator, right);
+            case OpCode.GREATER_EQUAL:
+                return Numbers.check(operator, left) >= Numbers.check(operator, right);
+            case OpCode.LESS:
+                return Numbers.check(operator, left) < Numbers.check(operator, right);
+            case OpCode.LESS_EQUAL:
+                return Numbers.check(operator, left) <= Numbers.check(operator, right);
+            case OpCode.ADD:
+                if (left instanceof Double && right instanceof Double) {
+                    return Numbers.box((double) left + (double) right);
+                } else if (left instanceof String && right instanceof String) {
+                    return (String) left + (String) right;
+                }
+                throw Interpreter.error(operator, "operands must be either both numbers or both Strings");
+            default:
+                // subtraction, multiplication or division, as told by the operator
+                double dividend = Numbers.check(operator, left);
+                double divisor = Numbers.check(operator, right);
+                return Numbers.box(Numbers.calculate(operator, dividend, divisor));
+        }
+    }
+
+    /**
+     * Runs the instructions that are rare enough to stay out of the main loop.
+     *
+     * @param ip offset of the first operand
+     * @return the new stack pointer
+     */
+    private int execute(int instruction, Chunk chunk, int ip, Object[] stack, int sp, LocalEnvironment local) {
+        final int[] code = chunk.code;
+        final Object[] constants = chunk.constants;
+        switch (instruction) {
+            case OpCode.DEFINE_GLOBAL:
+                globals.initialize(((Token) constants[code[ip]]).lexeme, stack[--sp]);
+                stack[sp] = null;
+                return sp;
+            case OpCode.DECLARE_GLOBAL:
+                globals.define(((Token) constants[code[ip]]).lexeme, null);
+                return sp;
+            case OpCode.SET_GLOBAL:
+                globals.assign((Token) constants[code[ip]], stack[sp - 1]);
+                return sp;
+
+            case OpCode.GET_PROPERTY:
+                stack[sp - 1] = getProperty(stack[sp - 1], (Expr.Get) constants[code[ip]]);
+                return sp;
+            case OpCode.SET_PROPERTY: {
+                Object value = stack[--sp];
+                if (!(stack[sp - 1] instanceof LoxInstance)) {
+                    throw new RuntimeError("Only instances have names");
+                }
+                Expr.Set property = (Expr.Set) constants[code[ip]];
+                ((LoxInstance) stack[sp - 1]).set(property.name, property.cache, value);
+                stack[sp - 1] = value;
+                stack[sp] = null;
+                return sp;
+            }
+
+            case OpCode.PRINT:
+                interpreter.print(stack[--sp]);
+                stack[sp] = null;
+                return sp;
+            case OpCode.DEFINE_CELL:
+                local.defineCell(null);
+                return sp;
+            case OpCode.INITIALIZE_CELL:
+                local.initialize(stack[--sp]);
+                stack[sp] = null;
+                return sp;
+            case OpCode.CLOSURE: {
+                Chunk function = (Chunk) constants[code[ip]];
+                LocalEnvironment closure = LocalEnvironment.capture(local, function.function.captures);
+                stack[sp++] = new VmFunction(function, closure, false, this);
+                return sp;
+            }
+            case OpCode.CLASS:
+                stack[sp++] = makeClass(code, ip, constants, local);
+                return sp;
+
+            case OpCode.BREAK_ERROR:
+                throw new SyntaxError("break can not occur outside of while loop");
+            case OpCode.BREAK:
+                throw Break.INSTANCE;
+            default:
+                throw new IllegalStateException(
+                    "Unknown instruction " + instruction + " in line " + chunk.lineAt(ip - 1));
+        }
+    }
+
+    private LoxClass makeClass(int[] code, int ip, Object[] constants, LocalEnvironment local) {
+        Stmt.Class declaration = (Stmt.Class) constants[code[ip]];
+        int methodCount = code[ip + 1];
+        int classMethodCount = code[ip + 2];
+        int next = ip + 3;
+
+        // the methods share what the class captures
+        LocalEnvironment closure = LocalEnvironment.capture(local, declaration.captures);
+        Map<String, LoxFunction> methods = new HashMap<>();
+        for (int i = 0; i < methodCount; i++) {
+            Chunk method = (Chunk) constants[code[next++]];
+            String name = method.function.name.lexeme;
+            methods.put(name, new VmFunction(method, closure, name.equals("init"), this));
+        }
+        Map<String, LoxFunction> classMethods = new HashMap<>();
+        for (int i = 0; i < classMethodCount; i++) {
+            Chunk method = (Chunk) constants[code[next++]];
+            classMethods.put(method.function.name.lexeme, new VmFunction(method, closure, false, this));
+        }
+
+        return new LoxClass(declaration.name.lexeme, methods, classMethods, interpreter.emptyShape);
+    }
+
+    private Object call(Object callee, Object[] stack, int first, int argumentCount, Token paren) {
+        if (!(callee instanceof LoxCallable)) {
+            throw new InterpreterError(paren, "Can only call functions and classes.");
+        }
+
+        LoxCallable function = (LoxCallable) callee;
+        Object[] arguments = new Object[Math.max(argumentCount, function.frameSize())];
+        System.arraycopy(stack, first, arguments, 0, argumentCount);
+        Arrays.fill(stack, first, first + argumentCount, null);
+
+        if (argumentCount != function.arity()) {
+            throw new InterpreterError(paren,
+                "Expected " + function.arity() + " arguments, got " + argumentCount + ".");
+        }
+
+        return function.call(interpreter, arguments);
+    }
+
+    private Object getProperty(Object object, Expr.Get property) {
+        if (object instanceof LoxInstance) {
+            return ((LoxInstance) object).read(property.name, property.cache, interpreter);
+        }
+
+        throw new InterpreterError(property.name, "Only instances have properties.");
+    }
+}
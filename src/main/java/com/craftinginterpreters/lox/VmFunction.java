@@ -0,0 +1,32 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * A function compiled to bytecode, run by the {@link VirtualMachine}.
+ */
+class VmFunction extends LoxFunction {
+
+    private final Chunk chunk;
+    private final VirtualMachine vm;
+
+    VmFunction(Chunk chunk, LocalEnvironment closure, boolean isInitializer, VirtualMachine vm) {
+        super(chunk.function, closure, isInitializer);
+        this.chunk = chunk;
+        this.vm = vm;
+    }
+
+    @Override
+    Object call(Interpreter interpreter, LocalEnvironment closure, Object[] arguments) {
+        if (interpreter.budget != null) interpreter.budget.charge();
+        LocalEnvironment local = frame(closure, arguments);
+
+        Object result = vm.run(chunk, local);
+        if (isInitializer) return closure.get(0);
+
+        return result;
+    }
+
+    @Override
+    LoxFunction withClosure(LocalEnvironment closure) {
+        return new VmFunction(chunk, closure, isInitializer, vm);
+    }
+}
@@ -18,30 +18,31 @@ public class GenerateAst {
 
         String outputDir = args[0];
         defineAst(outputDir, "Expr", Arrays.asList(
-        "Assign     : Token name, Expr value",    
+        "Assign     : Token name, Expr value ; int depth = -1, int slot = -1",
             "Binary      : Expr left, Token operator, Expr right",
             "Call        : Expr callee, Token paren, List<Expr> arguments",
-            "Get         : Expr object, Token name",
-            "Set         : Expr object, Token name, Expr value",
-            "This        : Token keyword",
+            "Get         : Expr object, Token name ; PropertyCache cache = new PropertyCache()",
+            "Set         : Expr object, Token name, Expr value ; PropertyCache cache = new PropertyCache()",
+            "This        : Token keyword ; int depth = -1, int slot = -1",
             "Grouping    : Expr expression",
             "Literal     : Object value",
             "Logical     : Expr left, Token operator, Expr right",
-            "Variable    : Token name",
+            "Variable    : Token name ; int depth = -1, int slot = -1",
             "Unary       : Token operator, Expr right"
         ));
 
         defineAst(outputDir, "Stmt", Arrays.asList(
-            "Block     : List<Stmt> statements",
+            "Block     : List<Stmt> statements ; boolean scoped = true",
+            "Class          : Token name, List<Stmt.Function> methods, List<Stmt.Function> classMethods ; boolean cell = false, int[] captures = null",
             "Expression     : Expr expression",
-            "Class          : Token name, List<Stmt.Function> methods, List<Stmt.Function> classMethods",
-            "Function       : Token name, List<Token> params, List<Stmt> body",
+            "Function       : Token name, List<Token> params, List<Stmt> body ; int slots = 0, boolean cell = false, int[] captures = null, int[] cells = null",
             "If             : Expr condition, Stmt thenBranch, Stmt elseBranch",
             "Print          : Expr expression",
             "Return         : Token keyword, Expr expression",
             "Break          : Token keyword",
             "While          : Expr condition, Stmt body",
-            "Var            : Token name, Expr initializer"
+            "For            : Expr.Variable counter, Token operator, Expr limit, double step, Stmt body ; boolean materialized = true",
+            "Var            : Token name, Expr initializer ; boolean cell = false"
         ));
     }
 
@@ -75,8 +76,11 @@ public class GenerateAst {
         for (String type : types) {
             writer.println();
             String className = type.split(":")[0].trim();
-            String fields = type.split(":")[1].trim();
-            defineType(writer, className, baseName, fields);
+            // fields after ';' are filled in later, e.g. by the Resolver
+            String[] fieldLists = type.split(":")[1].split(";");
+            String fields = fieldLists[0].trim();
+            String mutableFields = fieldLists.length > 1 ? fieldLists[1].trim() : "";
+            defineType(writer, className, baseName, fields, mutableFields);
         }
     }
 
@@ -91,7 +95,8 @@ public class GenerateAst {
         writer.println("}");
     }
 
-    private static void defineType(PrintWriter writer, String className, String baseName, String fieldList) {
+    private static void defineType(PrintWriter writer, String className, String baseName, String fieldList,
+            String mutableFieldList) {
         String[] fields = fieldList.split(", ");
         writer.println("  static class " + className + " extends " + baseName + " {");
 
@@ -99,6 +104,11 @@ public class GenerateAst {
         for (String field : fields) {
             writer.println("    final " + field + ";");
         }
+        if (!mutableFieldList.isEmpty()) {
+            for (String field : mutableFieldList.split(", ")) {
+                writer.println("    " + field + ";");
+            }
+        }
         writer.println();
         // ------
 
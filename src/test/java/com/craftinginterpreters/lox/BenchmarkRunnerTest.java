@@ -0,0 +1,53 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class BenchmarkRunnerTest {
+
+    @Test
+    void shouldTakePercentileByNearestRank() {
+        double[] sorted = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        assertEquals(5, BenchmarkRunner.percentile(sorted, 50));
+        assertEquals(10, BenchmarkRunner.percentile(sorted, 99));
+        assertEquals(1, BenchmarkRunner.percentile(sorted, 0));
+    }
+
+    @Test
+    void shouldLoadSavedBaseline() throws IOException {
+        Path file = Files.createTempFile("baseline", ".txt");
+        try {
+            BenchmarkRunner.Result result = new BenchmarkRunner.Result("vm/fib.lox", 1.5, 2.25, 1024);
+            BenchmarkRunner.save(Arrays.asList(result), file);
+
+            Map<String, BenchmarkRunner.Result> baseline = BenchmarkRunner.load(file);
+
+            BenchmarkRunner.Result loaded = baseline.get("vm/fib.lox");
+            assertEquals(1.5, loaded.median);
+            assertEquals(2.25, loaded.p99);
+            assertEquals(1024, loaded.bytes);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void shouldSkipFailingProgram() {
+        BenchmarkRunner runner = new BenchmarkRunner(Arrays.asList(Engine.TREE), 1, 1);
+        assertNull(runner.measure("tree/broken.lox", Engine.TREE, "print ;"));
+    }
+
+    @Test
+    void shouldSkipFailingProgramWithoutWarmup() {
+        BenchmarkRunner runner = new BenchmarkRunner(Arrays.asList(Engine.TREE), 1, 0);
+        assertNull(runner.measure("tree/broken.lox", Engine.TREE, "print ;"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class JitCompilerTest extends CommonTest {
+
+    private Interpreter interpreter;
+    private JitCode compiled;
+
+    @BeforeEach
+    void setUp() {
+        this.interpreter = new Interpreter();
+    }
+
+    @Test
+    void shouldCompileRecursiveFunction() {
+        givenFunction("fun fib(n) { if (n <= 1) return n; return fib(n - 2) + fib(n - 1); }");
+        whenCompiling("fib");
+        assertNotNull(compiled);
+        assertEquals(55.0, compiled.invoke(new Object[] {10.0}));
+    }
+
+    @Test
+    void shouldBoxLocalsThatChangeType() {
+        givenFunction("fun f(n) { var a = n; if (n > 1) a = \"big\"; return a; }");
+        whenCompiling("f");
+        assertEquals(1.0, compiled.invoke(new Object[] {1.0}));
+        assertEquals("big", compiled.invoke(new Object[] {2.0}));
+    }
+
+    @Test
+    void shouldFallBackForOtherArguments() {
+        givenFunction("fun twice(n) { return n * 2; }");
+        whenCompiling("twice");
+        assertSame(JitCode.FALLBACK, compiled.invoke(new Object[] {"a"}));
+    }
+
+    @Test
+    void shouldNotCompileClosures() {
+        givenFunction("fun outer() { var a = 1; fun inner() { return a; } return inner; }");
+        whenCompiling("outer");
+        assertNull(compiled);
+    }
+
+    private void givenFunction(String source) {
+        List<Stmt> statements = new Parser(new Scanner(source, interpreter.reporter), interpreter.reporter).parse();
+        new Resolver(interpreter).resolve(statements);
+        interpreter.interpret(statements);
+    }
+
+    private void whenCompiling(String name) {
+        LoxFunction function = (LoxFunction) interpreter.globals.get(identifier(name));
+        this.compiled = JitCompiler.compile(function, interpreter);
+    }
+}
@@ -0,0 +1,112 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LocalEnvironmentTest {
+
+    /**
+     * SUT
+     */
+    private LocalEnvironment environment;
+    private Object answerValue;
+
+    @BeforeEach
+    void setUp() {
+        this.environment = new LocalEnvironment(null);
+    }
+
+    @Test
+    void shouldBeEmpty() {
+        thenCountIs(0);
+    }
+
+    @Test
+    void shouldFindVarsBySlot() {
+        givenVariableDefined("one");
+        givenVariableDefined("two");
+        givenVariableDefined("three");
+        whenGettingValueAt(0, 1);
+        thenValueIs("two");
+        thenCountIs(3);
+    }
+
+    @Test
+    void shouldFindVarInEnclosingEnv() {
+        givenVariableDefined("one");
+        givenANewBlockEnv();
+        givenVariableDefined("two");
+        whenGettingValueAt(1, 0);
+        thenValueIs("one");
+    }
+
+    @Test
+    void shouldAssignVarInEnclosingEnv() {
+        givenVariableDefined("one");
+        givenANewBlockEnv();
+        whenAssigningValueAt(1, 0, "changed");
+        whenGettingValueAt(1, 0);
+        thenValueIs("changed");
+        thenCountIs(0);
+    }
+
+    @Test
+    void shouldKeepArgumentsAsFirstVars() {
+        givenAFrameWithArguments(new Object[] {"one", "two", null}, 2);
+        givenVariableDefined("three");
+        givenVariableDefined("four");
+        whenGettingValueAt(0, 1);
+        thenValueIs("two");
+        whenGettingValueAt(0, 3);
+        thenValueIs("four");
+        thenCountIs(4);
+    }
+
+    @Test
+    void shouldShareCellsWithCapturingScope() {
+        givenVariableDefined("copied");
+        givenCellDefined("shared");
+        givenANewBlockEnv();
+        LocalEnvironment captured = LocalEnvironment.capture(this.environment, new int[] {1, 1, 1, 0});
+        captured.assign(0, "changed");
+        captured.assign(1, "changed");
+        whenGettingValueAt(1, 1);
+        thenValueIs("changed");
+        whenGettingValueAt(1, 0);
+        thenValueIs("copied");
+    }
+
+    private void givenAFrameWithArguments(Object[] slots, int count) {
+        this.environment = new LocalEnvironment(this.environment, slots, count);
+    }
+
+    private void givenVariableDefined(Object value) {
+        this.environment.define(value);
+    }
+
+    private void givenCellDefined(Object value) {
+        this.environment.defineCell(value);
+    }
+
+    private void givenANewBlockEnv() {
+        this.environment = new LocalEnvironment(this.environment);
+    }
+
+    private void whenAssigningValueAt(int distance, int slot, Object value) {
+        this.environment.assignAt(distance, slot, value);
+    }
+
+    private void whenGettingValueAt(int distance, int slot) {
+        this.answerValue = this.environment.getAt(distance, slot);
+    }
+
+    private void thenValueIs(Object expected) {
+        assertEquals(expected, this.answerValue);
+    }
+
+    private void thenCountIs(int expected) {
+        assertEquals(expected, this.environment.count());
+    }
+}
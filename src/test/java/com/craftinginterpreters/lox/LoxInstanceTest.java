@@ -0,0 +1,62 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LoxInstanceTest extends CommonTest {
+
+    /**
+     * SUT
+     */
+    private LoxInstance instance;
+    private Interpreter interpreter;
+
+    @BeforeEach
+    void setUp() {
+        this.interpreter = new Interpreter();
+    }
+
+    @Test
+    void shouldInvokeMethodWithoutBinding() {
+        givenInstance("class A { init(x) { this.x = x; } add(y) { return this.x + y; } } var a = A(2);");
+        LoxFunction method = instance.lookupMethod(identifier("add"), new PropertyCache());
+        assertEquals(5.0, instance.invoke(method, interpreter, new Object[] {3.0}));
+    }
+
+    @Test
+    void shouldNotFindFieldsAsMethods() {
+        givenInstance("class A { init() { this.add = 1; } add(y) { return y; } } var a = A();");
+        assertNull(instance.lookupMethod(identifier("add"), new PropertyCache()));
+    }
+
+    @Test
+    void shouldReuseScopeOfThis() {
+        givenInstance("class A { one(x) { return x; } two(x) { return x; } } var a = A();");
+        LoxFunction one = instance.lookupMethod(identifier("one"), new PropertyCache());
+        LoxFunction two = instance.lookupMethod(identifier("two"), new PropertyCache());
+        assertSame(instance.scopeOfThis(one.closure), instance.scopeOfThis(two.closure));
+    }
+
+    @Test
+    void shouldReadFieldsThroughCache() {
+        givenInstance("class A { init() { this.x = 1; this.y = 2; } } var a = A();");
+        PropertyCache cache = new PropertyCache();
+        instance.set(identifier("z"), new PropertyCache(), 3.0);
+        assertEquals(2.0, instance.read(identifier("y"), cache, interpreter));
+        assertEquals(3.0, instance.read(identifier("z"), new PropertyCache(), interpreter));
+        assertEquals(2.0, instance.read(identifier("y"), cache, interpreter));
+    }
+
+    private void givenInstance(String source) {
+        List<Stmt> statements = new Parser(new Scanner(source, interpreter.reporter), interpreter.reporter).parse();
+        new Resolver(interpreter).resolve(statements);
+        interpreter.interpret(statements);
+        this.instance = (LoxInstance) interpreter.globals.get(identifier("a"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class LoxTest {
+
+    private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream errContent = new ByteArrayOutputStream();
+
+    @Test
+    void shouldKeepGlobalsBetweenRuns() {
+        Lox lox = givenLox(Engine.TREE);
+        assertTrue(lox.run("var a = 1;"));
+        assertTrue(lox.run("print a + 1;"));
+        assertEquals("2\n", outContent.toString());
+    }
+
+    @Test
+    void shouldReportErrorsToItsOwnStream() {
+        Lox lox = givenLox(Engine.VM);
+        assertFalse(lox.run("print 1 +;"));
+        assertTrue(lox.hadError());
+        assertEquals("", outContent.toString());
+        assertTrue(errContent.toString().contains("Error"));
+    }
+
+    @Test
+    void shouldRunBlocksWithoutDeclarationsInEnclosingScope() {
+        String script = "fun add(a, b) { var sum = a; { { sum = sum + b; } } return sum; }"
+            + "var t = 0; var i = 0; while (i < 1500) { t = add(t, 1); i = i + 1; } print t;"
+            + "fun outer() { var total = 0; var j = 0; while (j < 10) { { total = total + j; }"
+            + " if (j == 9) { var last = j; fun show() { print last + total; } show(); } j = j + 1; } }"
+            + "outer();";
+        for (Engine engine : Engine.values()) {
+            outContent.reset();
+            assertTrue(givenLox(engine).run(script));
+            assertEquals("1500\n54\n", outContent.toString(), engine.getName());
+        }
+    }
+
+    @Test
+    void shouldRunCountedLoops() {
+        String script = "var last; for (var i = 0; i < 3; i = i + 1) { fun f() { return i; } last = f; } print last();"
+            + "var s = 0; for (var j = 10; j > 0; j = j - 2.5) s = s + j; print s;"
+            + "for (var k = 0; k <= 1; k = 1 + k) print k;"
+            + "var n = 3; for (var m = 0; m < n; m = m + 1) n = n - 1; print n;";
+        for (Engine engine : Engine.values()) {
+            outContent.reset();
+            assertTrue(givenLox(engine).run(script));
+            assertEquals("3\n25\n0\n1\n1\n", outContent.toString(), engine.getName());
+        }
+    }
+
+    @Test
+    void shouldCaptureVariablesClosuresUse() {
+        String script = "fun counter(n) { fun next() { n = n + 1; return n; } return next; }"
+            + "var c = counter(10); c(); print c();"
+            + "fun outer() { fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); } return fib(10); } print outer();"
+            + "fun pair() { var shared = 1; var fixed = 2; fun add() { shared = shared + fixed; }"
+            + " fun get() { return shared; } add(); shared = shared * 10; add(); return get; } print pair()();"
+            + "fun greeter(greeting) { class Greeter { init(name) { this.name = name; }"
+            + " greet(other) { fun inner() { return greeting + \" \" + this.name + other; } return inner(); }"
+            + " twin(name) { return Greeter(name); } } return Greeter; }"
+            + "print greeter(\"hi\")(\"a\").twin(\"b\").greet(\"!\");";
+        for (Engine engine : Engine.values()) {
+            outContent.reset();
+            assertTrue(givenLox(engine).run(script));
+            assertEquals("12\n55\n32\nhi b!\n", outContent.toString(), engine.getName());
+        }
+    }
+
+    @Test
+    void shouldRunInstancesSideBySide() throws InterruptedException {
+        String script = "class Counter { init() { this.n = 0; } count(by) { this.n = this.n + by; } }"
+            + "var c = Counter(); var i = 0; while (i < 2000) { c.count(1); i = i + 1; } print c.n;";
+        List<ByteArrayOutputStream> outputs = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (Engine engine : Engine.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Lox lox = new Lox(engine, new PrintStream(out), new PrintStream(errContent));
+            outputs.add(out);
+            threads.add(new Thread(() -> lox.run(script)));
+        }
+
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (ByteArrayOutputStream output : outputs) {
+            assertEquals("2000\n", output.toString());
+        }
+        assertEquals("", errContent.toString());
+    }
+
+    @Test
+    void shouldRunSourcesAsOneProgram() {
+        Lox lox = givenLox(Engine.CLOSURE);
+        List<String> sources = new ArrayList<>();
+        sources.add("fun square(n) { return n * n; }");
+        sources.add("var nine = square(3);");
+        sources.add("print nine + square(4);");
+
+        assertTrue(lox.run(sources));
+        assertEquals("25\n", outContent.toString());
+    }
+
+    @Test
+    void shouldReportErrorsInOrderOfSources() {
+        Lox lox = givenLox(Engine.TREE);
+        List<String> sources = new ArrayList<>();
+        sources.add("print 1 +;");
+        sources.add("print 2;");
+        sources.add("var;");
+
+        assertFalse(lox.run(sources));
+        assertEquals("", outContent.toString());
+        String errors = errContent.toString();
+        assertTrue(errors.indexOf("Expect expression") < errors.indexOf("Expect variable name"));
+    }
+
+    private Lox givenLox(Engine engine) {
+        return new Lox(engine, new PrintStream(outContent), new PrintStream(errContent));
+    }
+}
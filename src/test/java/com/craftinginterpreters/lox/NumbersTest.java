@@ -0,0 +1,29 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+public class NumbersTest {
+
+    @Test
+    void shouldReuseSmallIntegers() {
+        assertSame(Numbers.box(42), Numbers.box(40 + 2));
+        assertSame(Numbers.box(-128), Numbers.box(-128));
+    }
+
+    @Test
+    void shouldBoxOtherNumbersAsIs() {
+        assertEquals(Double.valueOf(0.5), Numbers.box(0.5));
+        assertEquals(Double.valueOf(1024), Numbers.box(1024));
+        assertNotSame(Numbers.box(1024), Numbers.box(1024));
+    }
+
+    @Test
+    void shouldKeepNegativeZero() {
+        assertEquals(Double.valueOf(-0.0), Numbers.box(-0.0));
+        assertNotSame(Numbers.box(0.0), Numbers.box(-0.0));
+    }
+}
@@ -0,0 +1,121 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class OptimizerTest extends CommonTest {
+
+    private Interpreter interpreter;
+    private Resolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        this.interpreter = new Interpreter();
+    }
+
+    @Test
+    void shouldFoldArithmetic() {
+        assertEquals(7.0, printed(whenOptimizing("print 1 + 2 * (4 - 1);")));
+    }
+
+    @Test
+    void shouldFoldComparisonsAndEquality() {
+        assertEquals(true, printed(whenOptimizing("print 1 < 2 == !nil;")));
+    }
+
+    @Test
+    void shouldConcatenateStrings() {
+        assertEquals("ab", printed(whenOptimizing("print \"a\" + \"b\";")));
+    }
+
+    @Test
+    void shouldShortCircuitLogicals() {
+        assertEquals("yes", printed(whenOptimizing("print nil or \"yes\";")));
+        assertEquals(false, printed(whenOptimizing("print false and clock();")));
+    }
+
+    @Test
+    void shouldLeaveFailingOperations() {
+        assertTrue(printedExpr(whenOptimizing("print 1 / 0;")) instanceof Expr.Binary);
+        assertTrue(printedExpr(whenOptimizing("print -\"a\";")) instanceof Expr.Unary);
+    }
+
+    @Test
+    void shouldPropagateLocalConstants() {
+        List<Stmt> statements = whenOptimizing("fun f() { var n = 2 * 3; print n + 1; } f();");
+        Stmt.Function function = (Stmt.Function) statements.get(0);
+        assertEquals(7.0, printed(function.body.subList(1, 2)));
+    }
+
+    @Test
+    void shouldNotPropagateReassignedLocals() {
+        List<Stmt> statements = whenOptimizing("fun f() { var n = 1; n = n + 1; print n; } f();");
+        Stmt.Function function = (Stmt.Function) statements.get(0);
+        assertTrue(printedExpr(function.body.subList(2, 3)) instanceof Expr.Variable);
+    }
+
+    @Test
+    void shouldCountForLoops() {
+        List<Stmt> statements = whenOptimizing("var t = 0; for (var i = 10; i > 0; i = i - 2) t = t + 1;");
+        Stmt.For loop = (Stmt.For) ((Stmt.Block) statements.get(1)).statements.get(1);
+        assertEquals(-2.0, loop.step);
+        assertFalse(loop.materialized);
+    }
+
+    @Test
+    void shouldCountForLoopsWithFoldedStart() {
+        List<Stmt> statements = whenOptimizing("var t = 0; for (var i = -1; i < 2 + 1; i = i + 1) t = t + 1;");
+        Stmt.Block block = (Stmt.Block) statements.get(1);
+        assertEquals(-1.0, ((Expr.Literal) ((Stmt.Var) block.statements.get(0)).initializer).value);
+        assertTrue(block.statements.get(1) instanceof Stmt.For);
+    }
+
+    @Test
+    void shouldMaterializeCounterReadInBody() {
+        List<Stmt> statements = whenOptimizing("for (var i = 0; i < 3; i = i + 1) print i;");
+        Stmt.For loop = (Stmt.For) ((Stmt.Block) statements.get(0)).statements.get(1);
+        assertTrue(loop.materialized);
+    }
+
+    @Test
+    void shouldNotCountLoopsAssigningCounter() {
+        List<Stmt> statements = whenOptimizing("for (var i = 0; i < 3; i = i + 1) i = i + 1;");
+        assertTrue(((Stmt.Block) statements.get(0)).statements.get(1) instanceof Stmt.While);
+    }
+
+    @Test
+    void shouldKeepStatementsWithoutConstants() {
+        List<Stmt> statements = givenResolved("var a = clock(); print a;");
+        assertSame(statements, new Optimizer(resolver).optimize(statements));
+    }
+
+    private List<Stmt> givenResolved(String source) {
+        List<Stmt> statements = new Parser(new Scanner(source, interpreter.reporter), interpreter.reporter).parse();
+        resolver = new Resolver(interpreter);
+        resolver.resolve(statements);
+        assertFalse(interpreter.reporter.hadError());
+        return statements;
+    }
+
+    private List<Stmt> whenOptimizing(String source) {
+        List<Stmt> statements = givenResolved(source);
+        return new Optimizer(resolver).optimize(statements);
+    }
+
+    private Expr printedExpr(List<Stmt> statements) {
+        return ((Stmt.Print) statements.get(0)).expression;
+    }
+
+    private Object printed(List<Stmt> statements) {
+        Expr expression = printedExpr(statements);
+        assertTrue(expression instanceof Expr.Literal);
+        return ((Expr.Literal) expression).value;
+    }
+}
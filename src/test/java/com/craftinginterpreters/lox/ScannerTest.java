@@ -1,7 +1,11 @@
 package com.craftinginterpreters.lox;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -45,6 +49,19 @@ public class ScannerTest extends CommonTest {
         thenResultShouldBe(T_Var(), identifier("name"), EOF());
     }
 
+    @Test
+    void shouldScanTokensOneAtATime() {
+        ErrorReporter reporter = new ErrorReporter(new PrintStream(new ByteArrayOutputStream()));
+        this.scanner = new Scanner("var name #", reporter);
+
+        assertEquals(T_Var(), scanner.next());
+        assertEquals(identifier("name"), scanner.next());
+        assertFalse(reporter.hadError());
+        assertEquals(EOF(), scanner.next());
+        assertTrue(reporter.hadError());
+        assertFalse(scanner.hasNext());
+    }
+
     private Token EOF() {
         return new Token(TokenType.EOF, "", null, 0);
     }
@@ -0,0 +1,122 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+public class ScriptCacheTest {
+
+    private final ScriptCache cache = new ScriptCache(2);
+    private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream errContent = new ByteArrayOutputStream();
+
+    @Test
+    void shouldCompileSameSourceOnce() {
+        CompiledScript first = givenLox().compile("print 1;");
+        CompiledScript second = givenLox().compile("print 1;");
+        assertSame(first, second);
+    }
+
+    @Test
+    void shouldRunCachedScriptAgain() {
+        assertTrue(givenLox().run("var a = 2; print a * 3;"));
+        assertTrue(givenLox().run("var a = 2; print a * 3;"));
+        assertEquals("6\n6\n", outContent.toString());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void shouldNotCacheScriptsWithErrors() {
+        assertFalse(givenLox().run("print b;"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shouldResolveAgainWithoutUsedGlobals() {
+        Lox lox = givenLox();
+        lox.run("var a = 1;");
+        CompiledScript first = lox.compile("print a;");
+
+        Lox other = givenLox();
+        assertNull(other.compile("print a;"));
+        assertTrue(other.hadError());
+        assertSame(first, lox.compile("print a;"));
+    }
+
+    @Test
+    void shouldForgetLeastRecentlyUsed() {
+        Lox lox = givenLox();
+        CompiledScript first = lox.compile("print 1;");
+        lox.compile("print 2;");
+        lox.compile("print 1;");
+        lox.compile("print 3;");
+
+        assertEquals(2, cache.size());
+        assertSame(first, lox.compile("print 1;"));
+        assertNull(cache.get(ScriptCache.hash("print 2;")));
+    }
+
+    @Test
+    void shouldReadWhatWasWritten() throws IOException {
+        String source = "class A { init(n) { this.n = n; } class twice(n) { return A(n * 2); } plus(m) { return this.n + m; } }"
+            + "fun count(to) { var i = 0; while (i < to) if (i == 2) break; else i = i + 1; return i; }"
+            + "var a = A.twice(-1.5); print a.plus(0); print count(5); print !nil and \"s\" or false;"
+            + "var t = 0; for (var i = 0; i < 3; i = i + 1) t = t + i; print t;"
+            + "fun counter() { var n = 0; fun next(by) { n = n + by; return n; } return next; } var c = counter(); c(1); print c(2);";
+        Lox lox = givenLox();
+        CompiledScript script = lox.compile(source);
+        String hash = ScriptCache.hash(source);
+
+        CompiledScript read = AstReader.read(ByteBuffer.wrap(AstWriter.write(script, hash)), hash);
+        lox.execute(script);
+        lox.execute(read);
+
+        assertEquals("-3\n2\ns\n3\n3\n-3\n2\ns\n3\n3\n", outContent.toString());
+        assertEquals("", errContent.toString());
+    }
+
+    @Test
+    void shouldNotReadOtherSource() throws IOException {
+        CompiledScript script = givenLox().compile("print 1;");
+        byte[] bytes = AstWriter.write(script, ScriptCache.hash("print 1;"));
+        assertNull(AstReader.read(ByteBuffer.wrap(bytes), ScriptCache.hash("print 2;")));
+    }
+
+    @Test
+    void shouldLoadScriptsFromDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("lox");
+        new Lox(Engine.TREE, null, null, new ScriptCache(1, directory)).compile("print 1;");
+
+        ScriptCache other = new ScriptCache(1, directory);
+        assertNotNull(other.get(ScriptCache.hash("print 1;")));
+        assertEquals(1, other.size());
+    }
+
+    @Test
+    void shouldCompileMalformedFileAgain() throws IOException {
+        Path directory = Files.createTempDirectory("lox");
+        String hash = ScriptCache.hash("print 1;");
+        Files.write(directory.resolve(hash + ".loxc"), new byte[] {'L', 'O', 'X', 'C', 0, 0, 0, 1, 0});
+
+        Lox lox = new Lox(Engine.TREE, new PrintStream(outContent), new PrintStream(errContent), new ScriptCache(1, directory));
+        assertTrue(lox.run("print 1;"));
+        assertEquals("1\n", outContent.toString());
+        assertNotNull(new ScriptCache(1, directory).get(hash));
+    }
+
+    private Lox givenLox() {
+        return new Lox(Engine.TREE, new PrintStream(outContent), new PrintStream(errContent), cache);
+    }
+}
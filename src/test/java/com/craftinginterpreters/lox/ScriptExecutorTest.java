@@ -0,0 +1,93 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+public class ScriptExecutorTest {
+
+    private static final String ENDLESS = "var i = 0; while (true) { i = i + 1; }";
+
+    @Test
+    void shouldKeepScriptsApart() throws InterruptedException, ExecutionException {
+        try (ScriptExecutor executor = new ScriptExecutor(Engine.TREE, 100_000, Duration.ofSeconds(10))) {
+            ScriptResult first = executor.submit("var a = 1; print a;").get();
+            ScriptResult second = executor.submit("print a;").get();
+
+            assertTrue(first.isSuccess());
+            assertEquals("1\n", first.getOutput());
+            assertFalse(second.isSuccess());
+            assertEquals("", second.getOutput());
+        }
+    }
+
+    @Test
+    void shouldReportRuntimeErrorsOnEveryEngine() throws InterruptedException, ExecutionException {
+        for (Engine engine : Engine.values()) {
+            try (ScriptExecutor executor = new ScriptExecutor(engine, 100_000, Duration.ofSeconds(10))) {
+                ScriptResult undefined = executor.submit("print 1; class A {} var x = A(); print x.y;").get();
+                ScriptResult misplaced = executor.submit("print 2; { break; }").get();
+
+                assertFalse(undefined.isSuccess());
+                assertEquals("1\n", undefined.getOutput());
+                assertTrue(undefined.getErrors().contains("Undefined property 'y'."), engine.getName());
+                assertFalse(misplaced.isSuccess());
+                assertEquals("2\n", misplaced.getOutput());
+                assertTrue(misplaced.getErrors().contains("break can not occur"), engine.getName());
+            }
+        }
+    }
+
+    @Test
+    void shouldReportUnassignedGlobalsOnEveryEngine() throws InterruptedException, ExecutionException {
+        for (Engine engine : Engine.values()) {
+            try (ScriptExecutor executor = new ScriptExecutor(engine, 100_000, Duration.ofSeconds(10))) {
+                ScriptResult direct = executor.submit("print 1; var a; print a;").get();
+                ScriptResult inFunction = executor.submit("var b; fun f() { return b; } print 2; print f();").get();
+
+                assertFalse(direct.isSuccess());
+                assertEquals("1\n", direct.getOutput());
+                assertTrue(direct.getErrors().contains("Variable was not assigned"), engine.getName());
+                assertFalse(inFunction.isSuccess());
+                assertEquals("2\n", inFunction.getOutput());
+                assertTrue(inFunction.getErrors().contains("Variable was not assigned"), engine.getName());
+            }
+        }
+    }
+
+    @Test
+    void shouldStopAtStepLimitOnEveryEngine() throws InterruptedException, ExecutionException {
+        for (Engine engine : Engine.values()) {
+            try (ScriptExecutor executor = new ScriptExecutor(engine, 10_000, Duration.ofSeconds(10))) {
+                ScriptResult result = executor.submit(ENDLESS).get();
+
+                assertFalse(result.isSuccess());
+                assertTrue(result.getErrors().contains("Step limit exceeded"), engine.getName());
+            }
+        }
+    }
+
+    @Test
+    void shouldStopAtTimeLimit() throws InterruptedException, ExecutionException {
+        try (ScriptExecutor executor = new ScriptExecutor(Engine.VM, Long.MAX_VALUE, Duration.ofMillis(50))) {
+            ScriptResult result = executor.submit(ENDLESS).get();
+
+            assertFalse(result.isSuccess());
+            assertTrue(result.getErrors().contains("Time limit exceeded"));
+        }
+    }
+
+    @Test
+    void shouldStopEndlessRecursion() throws InterruptedException, ExecutionException {
+        try (ScriptExecutor executor = new ScriptExecutor(Engine.CLOSURE, 10_000, Duration.ofSeconds(10))) {
+            ScriptResult result = executor.submit("fun f(n) { return f(n + 1); } f(0);").get();
+
+            assertFalse(result.isSuccess());
+        }
+    }
+}
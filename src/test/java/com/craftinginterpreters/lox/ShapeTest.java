@@ -0,0 +1,46 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+public class ShapeTest {
+
+    @Test
+    void shouldShareShapeOfSameFields() {
+        Shape empty = Shape.empty();
+        assertSame(empty.with("x").with("y"), empty.with("x").with("y"));
+    }
+
+    @Test
+    void shouldTellOrderOfFieldsApart() {
+        Shape empty = Shape.empty();
+        assertNotSame(empty.with("x").with("y"), empty.with("y").with("x"));
+    }
+
+    @Test
+    void shouldNotShareShapesOfInterpreters() {
+        assertNotSame(new Interpreter().emptyShape.with("x"), new Interpreter().emptyShape.with("x"));
+    }
+
+    @Test
+    void shouldIndexFieldsInOrderOfAdding() {
+        Shape shape = Shape.empty().with("x").with("y");
+        assertEquals(0, shape.indexOf("x"));
+        assertEquals(1, shape.indexOf("y"));
+        assertEquals(-1, shape.indexOf("z"));
+        assertEquals(2, shape.size());
+    }
+
+    @Test
+    void shouldRememberShapesInCache() {
+        Shape shape = Shape.empty().with("x");
+        PropertyCache cache = new PropertyCache();
+        PropertyCache.Entry entry = cache.write(shape, "y");
+        assertSame(entry, cache.find(shape));
+        assertEquals(1, entry.index);
+        assertSame(shape.with("y"), entry.next);
+    }
+}
@@ -0,0 +1,74 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class SourceFileTest {
+
+    @Test
+    void shouldViewAsciiFile() throws IOException {
+        CharSequence source = whenOpening("print \"a\" + \"b\";\n");
+
+        assertTrue(source instanceof SourceFile.Ascii);
+        assertEquals("print \"a\" + \"b\";\n", source.toString());
+        assertEquals("\"a\"", source.subSequence(6, 9).toString());
+    }
+
+    @Test
+    void shouldDecodeUtf8File() throws IOException {
+        CharSequence source = whenOpening("print \"\u00fcber \u20ac \ud83d\ude00\";");
+
+        assertEquals("print \"\u00fcber \u20ac \ud83d\ude00\";", source.toString());
+        List<Token> tokens = new Scanner(source).scanTokens();
+        assertEquals("\u00fcber \u20ac \ud83d\ude00", tokens.get(1).literal);
+    }
+
+    @Test
+    void shouldDecodeUtf8FileInChunks() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append("a\u00e9\ud83d\ude00 ");
+        }
+        byte[] utf8 = text.toString().getBytes(StandardCharsets.UTF_8);
+        // a byte that can not start a char, in the middle of the second chunk
+        utf8[12_000] = (byte) 0xff;
+        String expected = new String(utf8, StandardCharsets.UTF_8);
+
+        CharSequence source = whenOpening(utf8);
+
+        assertTrue(source instanceof SourceFile.Utf8);
+        assertEquals(expected.length(), source.length());
+        for (int i = expected.length() - 1; i >= 0; i -= 997) {
+            assertEquals(expected.charAt(i), source.charAt(i));
+        }
+        assertEquals(expected, source.toString());
+        assertEquals(expected.substring(8_000, 9_000), source.subSequence(8_000, 9_000).toString());
+    }
+
+    @Test
+    void shouldHashLikeString() throws IOException {
+        String ascii = "var a = 1;";
+        String utf8 = "var a = \"\u00e9\";";
+
+        assertEquals(ScriptCache.hash(ascii), ScriptCache.hash(whenOpening(ascii)));
+        assertEquals(ScriptCache.hash(utf8), ScriptCache.hash(whenOpening(utf8)));
+    }
+
+    private CharSequence whenOpening(String content) throws IOException {
+        return whenOpening(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private CharSequence whenOpening(byte[] content) throws IOException {
+        Path file = Files.createTempFile("source", ".lox");
+        Files.write(file, content);
+        return SourceFile.open(file);
+    }
+}
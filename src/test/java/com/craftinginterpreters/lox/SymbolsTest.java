@@ -0,0 +1,46 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+public class SymbolsTest {
+
+    private final Symbols symbols = new Symbols();
+
+    @Test
+    void shouldRecognizeKeywords() {
+        assertEquals(TokenType.FOR, Symbols.keyword("for", 0, 3));
+        assertEquals(TokenType.FUN, Symbols.keyword("a fun", 2, 5));
+        assertEquals(TokenType.IDENTIFIER, Symbols.keyword("fork", 0, 4));
+        assertEquals(TokenType.IDENTIFIER, Symbols.keyword("fo", 0, 2));
+        assertEquals(TokenType.IDENTIFIER, Symbols.keyword("Var", 0, 3));
+    }
+
+    @Test
+    void shouldInternSameText() {
+        String first = symbols.intern("name = name;", 0, 4);
+        String second = symbols.intern("name = name;", 7, 11);
+
+        assertEquals("name", first);
+        assertSame(first, second);
+    }
+
+    @Test
+    void shouldKeepSymbolsWhenGrowing() {
+        String source = "";
+        for (int i = 0; i < 200; i++) {
+            source += "n" + i + " ";
+        }
+        String first = symbols.intern(source, 0, 2);
+        String last = symbols.intern(source, source.length() - 5, source.length() - 1);
+        for (int i = 0; i < source.length(); i = source.indexOf(' ', i) + 1) {
+            symbols.intern(source, i, source.indexOf(' ', i));
+        }
+
+        assertSame(first, symbols.intern(source, 0, 2));
+        assertSame(last, symbols.intern(source, source.length() - 5, source.length() - 1));
+        assertEquals("n199", last);
+    }
+}
@@ -0,0 +1,49 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+public class TokenBufferTest {
+
+    private final TokenBuffer buffer = new TokenBuffer("x - 12.5 \"text\"", new Symbols(), 2);
+
+    @Test
+    void shouldMakeTokensFromTheSource() {
+        int minus = buffer.add(TokenType.MINUS, 2, 3, 1, null);
+        int number = buffer.add(TokenType.NUMBER, 4, 8, 1, null);
+
+        assertEquals("-", buffer.token(minus).lexeme);
+        assertEquals(12.5, buffer.token(number).literal);
+        assertNull(buffer.token(number).lexeme);
+    }
+
+    @Test
+    void shouldTakeStringsWithoutQuotes() {
+        int string = buffer.add(TokenType.STRING, 9, 15, 2, null);
+
+        assertEquals("text", buffer.token(string).literal);
+        assertEquals(2, buffer.token(string).line);
+    }
+
+    @Test
+    void shouldMakeEveryTokenOnce() {
+        int identifier = buffer.add(TokenType.IDENTIFIER, 0, 1, 1, "x");
+
+        assertSame(buffer.token(identifier), buffer.token(identifier));
+        assertEquals("x", buffer.token(identifier).lexeme);
+    }
+
+    @Test
+    void shouldKeepTheLastTokens() {
+        buffer.add(TokenType.IDENTIFIER, 0, 1, 1, "x");
+        int minus = buffer.add(TokenType.MINUS, 2, 3, 1, null);
+        int number = buffer.add(TokenType.NUMBER, 4, 8, 1, null);
+
+        assertEquals(3, buffer.size());
+        assertEquals(TokenType.MINUS, buffer.type(minus));
+        assertEquals(TokenType.NUMBER, buffer.type(number));
+    }
+}
@@ -0,0 +1,134 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class VirtualMachineTest extends CommonTest {
+
+    /**
+     * SUT
+     */
+    private VirtualMachine vm;
+    private List<Stmt> inInput;
+    private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream errContent = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+    private final PrintStream originalErr = System.err;
+
+    @BeforeEach
+    public void setUpStreams() {
+        System.setOut(new PrintStream(outContent));
+        System.setErr(new PrintStream(errContent));
+    }
+
+    @AfterEach
+    public void restoreStreams() {
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.vm = new VirtualMachine(new Interpreter());
+    }
+
+    @Test
+    void shouldPrintNumber() {
+        givenInput(inputs(
+            Print(literal(1.0))
+        ));
+        whenRunning();
+        thenContentWasPrinted("1");
+    }
+
+    @Test
+    void shouldPrintVar_Calc() {
+        givenInput(inputs(
+            S_Var("name", Calc(literal(1.0), Plus(), literal(3.0))),
+            Print(E_Var("name"))
+        ));
+        whenRunning();
+        thenContentWasPrinted("4");
+    }
+
+    @Test
+    void shouldConcatenateStrings() {
+        givenInput(inputs(
+            S_Var("name", Calc(literal("a"), Plus(), literal("b"))),
+            Print(E_Var("name"))
+        ));
+        whenRunning();
+        thenContentWasPrinted("ab");
+    }
+
+    @Test
+    void shouldReportMixedOperands() {
+        givenInput(inputs(
+            Print(Calc(literal("a"), Plus(), literal(1.0)))
+        ));
+        whenRunning();
+        thenNothingWasPrinted();
+        thenAnErrorHappened();
+    }
+
+    @Test
+    void shouldNotAllowAccessToUninitializedVar() {
+        givenInput(inputs(
+            S_Var("a", null),
+            S_Var("b", null),
+            S_Expr(E_Assign("a", "assigned")),
+            Print(E_Var("a")),
+            Print(E_Var("b"))
+        ));
+
+        whenRunning();
+
+        thenAnErrorHappened();
+    }
+
+    @Test
+    void shouldKeepOperandStackSmall() {
+        Chunk chunk = new BytecodeCompiler().compile(inputs(
+            Print(Calc(literal(1.0), Plus(), literal(3.0))),
+            S_Expr(E_Assign("a", Calc(literal(1.0), Plus(), literal(3.0))))
+        ));
+        assertEquals(2, chunk.maxStack);
+    }
+
+    private void thenContentWasPrinted(String expected) {
+        assertEquals(expected + "\n", outContent.toString());
+    }
+
+    private void thenNothingWasPrinted() {
+        assertEquals("", outContent.toString());
+    }
+
+    private void thenAnErrorHappened() {
+        assertNotEquals("", errContent.toString(), "Error Stream should not be empty");
+    }
+
+    private void whenRunning() {
+        try {
+            this.vm.interpret(this.inInput);
+        } catch (Exception e) {
+            this.errContent.writeBytes(e.getMessage().getBytes());
+        }
+    }
+
+    private List<Stmt> inputs(Stmt ...inputs) {
+        return Arrays.asList(inputs);
+    }
+
+    private void givenInput(List<Stmt> input) {
+        this.inInput = input;
+    }
+}